@@ -0,0 +1,64 @@
+package com.squarecross.photoalbum.image;
+
+import com.squarecross.photoalbum.Constants;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//photos/original 아래 실제 사진 전체를 한 번씩 썸네일로 만든다. 경로는 -Dbench.corpus 로 바꿀 수 있다
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CorpusThumbnailBenchmark {
+
+    @Param({"LEGACY", "PROGRESSIVE"})
+    public ThumbnailEngine.Mode mode;
+
+    private final List<byte[]> corpus = new ArrayList<>();
+    private final List<String> formats = new ArrayList<>();
+    private ThumbnailEngine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path root = Paths.get(System.getProperty("bench.corpus", "photos/original"));
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for(Path file : files) {
+            String name = file.getFileName().toString().toLowerCase();
+            int dot = name.lastIndexOf('.');
+            if(dot < 0) {
+                continue;
+            }
+            corpus.add(Files.readAllBytes(file));
+            formats.add(name.substring(dot + 1));
+        }
+        if(corpus.isEmpty()) {
+            throw new IllegalStateException("No images under " + root.toAbsolutePath());
+        }
+        engine = new ThumbnailEngine(mode);
+    }
+
+    @Benchmark
+    public void thumbnailCorpus(Blackhole blackhole) throws IOException {
+        for(int i = 0; i < corpus.size(); i++) {
+            try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(corpus.get(i)))) {
+                DecodedImage decoded = ImageDecoder.decode(input, Constants.THUMB_SIZE);
+                blackhole.consume(ImagePipelineBenchmark.encode(engine.resize(decoded.getImage(), Constants.THUMB_SIZE), formats.get(i)));
+            }
+        }
+    }
+}
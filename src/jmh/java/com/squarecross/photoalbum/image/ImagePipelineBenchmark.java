@@ -0,0 +1,110 @@
+package com.squarecross.photoalbum.image;
+
+import com.squarecross.photoalbum.Constants;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//업로드 후 썸네일 생성 경로를 단계별로 잰다: 디코딩(전체/subsampling), 리사이즈(Scalr/progressive), 인코딩
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImagePipelineBenchmark {
+
+    @Param({"1024", "3000", "6000"})
+    public int size;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private byte[] encoded;
+    private BufferedImage decoded;
+    private BufferedImage thumb;
+    private ThumbnailEngine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = syntheticImage(size, size * 3 / 4);
+        encoded = encode(image, format);
+        decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+        engine = new ThumbnailEngine(ThumbnailEngine.Mode.PROGRESSIVE);
+        thumb = engine.resize(decoded, Constants.THUMB_SIZE);
+    }
+
+    @Benchmark
+    public BufferedImage decodeFull() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public BufferedImage decodeSubsampled() throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            return ImageDecoder.decode(input, Constants.THUMB_SIZE).getImage();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage resizeScalr() {
+        return Scalr.resize(decoded, Constants.THUMB_SIZE, Constants.THUMB_SIZE);
+    }
+
+    @Benchmark
+    public BufferedImage resizeProgressive() {
+        return engine.resize(decoded, Constants.THUMB_SIZE, ThumbnailEngine.Mode.PROGRESSIVE);
+    }
+
+    @Benchmark
+    public byte[] encodeThumb() throws IOException {
+        return encode(thumb, format);
+    }
+
+    //업로드 한 건이 썸네일까지 거치는 전체 경로
+    @Benchmark
+    public byte[] thumbnailEndToEnd() throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            DecodedImage image = ImageDecoder.decode(input, Constants.THUMB_SIZE);
+            return encode(engine.resize(image.getImage(), Constants.THUMB_SIZE), format);
+        }
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if(!ImageIO.write(image, format, out)) {
+            throw new IOException("No writer for " + format);
+        }
+        return out.toByteArray();
+    }
+
+    //사진처럼 압축률이 적당하도록 그라디언트 위에 노이즈를 얹는다
+    static BufferedImage syntheticImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, new Color(30, 90, 160), width, height, new Color(240, 200, 120)));
+            graphics.fillRect(0, 0, width, height);
+        } finally {
+            graphics.dispose();
+        }
+        Random random = new Random(42);
+        int[] pixels = new int[width];
+        for(int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, pixels, 0, width);
+            for(int x = 0; x < width; x++) {
+                pixels[x] ^= random.nextInt(16) * 0x010101;
+            }
+            image.setRGB(0, y, width, 1, pixels, 0, width);
+        }
+        return image;
+    }
+}
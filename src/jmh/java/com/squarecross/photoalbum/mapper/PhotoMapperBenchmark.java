@@ -0,0 +1,48 @@
+package com.squarecross.photoalbum.mapper;
+
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//사진 목록 API 가 엔티티를 DTO 로 바꾸는 비용
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhotoMapperBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int count;
+
+    private List<Photo> photos;
+
+    @Setup
+    public void setUp() {
+        Album album = new Album();
+        album.setAlbumId(1L);
+        photos = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            Photo photo = new Photo();
+            photo.setPhotoId((long) i);
+            photo.setAlbum(album);
+            photo.setFileName("IMG_" + i + ".jpg");
+            photo.setOriginalUrl("/photos/original/1/IMG_" + i + ".jpg");
+            photo.setThumbUrl("/photos/thumb/1/IMG_" + i + ".jpg");
+            photo.setFileSize(1024 * i);
+            photo.setUploadedAt(new Date());
+            photo.setThumbStatus(i % 10 == 0 ? ThumbnailStatus.PENDING : ThumbnailStatus.READY);
+            photos.add(photo);
+        }
+    }
+
+    @Benchmark
+    public List<PhotoDto> convertToDtoList() {
+        return PhotoMapper.convertToDtoList(photos);
+    }
+}
@@ -0,0 +1,41 @@
+package com.squarecross.photoalbum.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//PhotoService.getNextFileName 이 FileNames 로 하는 부분만 잰다. findFileNameVariants 로 DB 에서 이름을 읽는 비용은 빠져 있다.
+//nextFileName: 같은 이름의 사진이 n 장 있을 때 다음 이름을 고르는 비용, variantPattern: 그 조회에 넘길 LIKE 패턴을 만드는 비용
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileNamesBenchmark {
+
+    @Param({"0", "10", "1000", "10000"})
+    public int collisions;
+
+    private List<String> taken;
+
+    @Setup
+    public void setUp() {
+        taken = new ArrayList<>();
+        if(collisions > 0) {
+            taken.add("IMG_0001.jpg");
+        }
+        for(int i = 2; i <= collisions; i++) {
+            taken.add("IMG_0001 (" + i + ").jpg");
+        }
+    }
+
+    @Benchmark
+    public String nextFileName() {
+        return FileNames.nextFileName("IMG_0001.jpg", taken);
+    }
+
+    @Benchmark
+    public String variantPattern() {
+        return FileNames.variantPattern("IMG_0001_100%_[final].jpg");
+    }
+}
@@ -0,0 +1,81 @@
+package com.squarecross.photoalbum.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+//엔드포인트별 응답 시간을 모아 p50/p99/p999 와 처리량을 계산한다
+class LatencyRecorder {
+
+    private final Map<String, ConcurrentLinkedQueue<Long>> samples = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long nanos, boolean success) {
+        samples.computeIfAbsent(endpoint, key -> new ConcurrentLinkedQueue<>()).add(nanos);
+        if(!success) {
+            errors.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+        }
+    }
+
+    List<String> report(double seconds) {
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoint,count,errors,throughput_rps,p50_ms,p99_ms,p999_ms,max_ms");
+        samples.keySet().stream().sorted().forEach(endpoint -> {
+            long[] sorted = samples.get(endpoint).stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            long errorCount = errors.containsKey(endpoint) ? errors.get(endpoint).sum() : 0;
+            lines.add(String.format("%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f", endpoint, sorted.length, errorCount,
+                    sorted.length / seconds, millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                    millis(percentile(sorted, 0.999)), millis(sorted[sorted.length - 1])));
+        });
+        return lines;
+    }
+
+    void write(Path path, List<String> lines) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.write(path, lines);
+    }
+
+    //이전 결과와 p99, 처리량을 비교한 줄
+    static List<String> compare(List<String> current, Path baseline) throws IOException {
+        Map<String, String[]> previous = new HashMap<>();
+        List<String> baselineLines = Files.readAllLines(baseline);
+        for(String line : baselineLines.subList(1, baselineLines.size())) {
+            String[] columns = line.split(",");
+            previous.put(columns[0], columns);
+        }
+        List<String> lines = new ArrayList<>();
+        for(String line : current.subList(1, current.size())) {
+            String[] columns = line.split(",");
+            String[] before = previous.get(columns[0]);
+            if(before == null) {
+                continue;
+            }
+            lines.add(String.format("%-16s throughput %+.1f%%  p99 %+.1f%%", columns[0],
+                    change(before[3], columns[3]), change(before[5], columns[5])));
+        }
+        return lines;
+    }
+
+    private static double change(String before, String after) {
+        double previous = Double.parseDouble(before);
+        return previous == 0 ? 0 : (Double.parseDouble(after) - previous) * 100 / previous;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
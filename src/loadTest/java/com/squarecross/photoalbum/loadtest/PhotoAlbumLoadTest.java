@@ -0,0 +1,252 @@
+package com.squarecross.photoalbum.loadtest;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//앨범 N개 x 사진 M장을 넣어두고 목록/조회/업로드/이동/zip 다운로드를 섞어서 호출한다.
+//결과는 엔드포인트별 p50/p99/p999 와 초당 처리량으로 loadtest.report 에 CSV 로 남기고,
+//loadtest.baseline 에 이전 CSV 를 주면 변화율도 출력한다
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class PhotoAlbumLoadTest {
+
+    private static final int ALBUMS = Integer.getInteger("loadtest.albums", 20);
+    private static final int PHOTOS = Integer.getInteger("loadtest.photos", 50);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+    private static final int SECONDS = Integer.getInteger("loadtest.seconds", 30);
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    AlbumRepository albumRepository;
+
+    @Autowired
+    PhotoRepository photoRepository;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final List<Long> albumIds = new ArrayList<>();
+    //사진 ID -> 현재 앨범 ID. 이동 중인 사진은 잠시 빠진다
+    private final Map<Long, Long> photoAlbums = new ConcurrentHashMap<>();
+    private byte[] png;
+
+    @BeforeAll
+    static void checkStore() {
+        assertTrue(System.getProperty("photoalbum.path-prefix") != null,
+                "-Dphotoalbum.path-prefix 로 임시 저장소를 지정해야 합니다 (./gradlew loadTest 는 자동으로 지정)");
+    }
+
+    @DisplayName("앨범/사진 API 에 혼합 부하를 걸고 엔드포인트별 지연 시간과 처리량을 기록한다.")
+    @Test
+    void 혼합_부하_테스트() throws Exception {
+        seed();
+
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.SECONDS.toNanos(SECONDS);
+        for(int i = 0; i < THREADS; i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    nextRequest();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(SECONDS + 60, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+
+        List<String> report = recorder.report(elapsed);
+        report.forEach(System.out::println);
+        String reportPath = System.getProperty("loadtest.report", "build/reports/loadtest/report.csv");
+        recorder.write(Paths.get(reportPath), report);
+        String baseline = System.getProperty("loadtest.baseline");
+        if(baseline != null && Files.exists(Paths.get(baseline))) {
+            LatencyRecorder.compare(report, Paths.get(baseline)).forEach(System.out::println);
+        }
+    }
+
+    //HTTP 를 거치지 않고 DB 와 저장소에 직접 넣는다
+    private void seed() throws IOException {
+        png = png(64, 48);
+        for(int a = 0; a < ALBUMS; a++) {
+            Album album = new Album();
+            album.setAlbumName("loadtest-" + a);
+            album = albumRepository.save(album);
+            Long albumId = album.getAlbumId();
+            albumIds.add(albumId);
+            Path original = Files.createDirectories(Paths.get(Constants.PATH_PREFIX + "/photos/original/" + albumId));
+            Path thumb = Files.createDirectories(Paths.get(Constants.PATH_PREFIX + "/photos/thumb/" + albumId));
+
+            List<Photo> photos = new ArrayList<>();
+            for(int p = 0; p < PHOTOS; p++) {
+                String fileName = "seed-" + p + ".png";
+                Files.write(original.resolve(fileName), png);
+                Files.write(thumb.resolve(fileName), png);
+                Photo photo = new Photo();
+                photo.setAlbum(album);
+                photo.setFileName(fileName);
+                photo.setOriginalUrl("/photos/original/" + albumId + "/" + fileName);
+                photo.setThumbUrl("/photos/thumb/" + albumId + "/" + fileName);
+                photo.setFileSize(png.length);
+                photo.setThumbStatus(ThumbnailStatus.READY);
+                photos.add(photo);
+            }
+            for(Photo photo : photoRepository.saveAll(photos)) {
+                photoAlbums.put(photo.getPhotoId(), albumId);
+            }
+        }
+    }
+
+    private void nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long albumId = albumIds.get(random.nextInt(albumIds.size()));
+        int roll = random.nextInt(100);
+        if(roll < 20) {
+            call("albums.list", get("/albums?size=20"));
+        } else if(roll < 35) {
+            call("albums.get", get("/albums/" + albumId));
+        } else if(roll < 55) {
+            call("photos.list", get("/albums/" + albumId + "/photos?size=50"));
+        } else if(roll < 75) {
+            Long photoId = randomPhoto();
+            if(photoId != null) {
+                call("photos.get", get("/albums/" + photoAlbums.get(photoId) + "/photos/" + photoId));
+            }
+        } else if(roll < 85) {
+            call("photos.upload", upload(albumId));
+        } else if(roll < 92) {
+            move(albumIds.get(random.nextInt(albumIds.size())));
+        } else {
+            download();
+        }
+    }
+
+    private void move(Long toAlbumId) {
+        Long photoId = randomPhoto();
+        if(photoId == null) {
+            return;
+        }
+        Long fromAlbumId = photoAlbums.remove(photoId);
+        if(fromAlbumId == null) {
+            return; //다른 스레드가 옮기는 중
+        }
+        boolean moved = call("photos.move", HttpRequest.newBuilder(uri("/albums/" + fromAlbumId + "/photos/move?toAlbumId="
+                + toAlbumId + "&photoIds=" + photoId)).PUT(HttpRequest.BodyPublishers.noBody()).build());
+        photoAlbums.put(photoId, moved ? toAlbumId : fromAlbumId);
+    }
+
+    private void download() {
+        List<Long> photoIds = new ArrayList<>();
+        Long albumId = null;
+        for(Map.Entry<Long, Long> entry : photoAlbums.entrySet()) {
+            if(albumId == null) {
+                albumId = entry.getValue();
+            }
+            if(entry.getValue().equals(albumId)) {
+                photoIds.add(entry.getKey());
+            }
+            if(photoIds.size() == 10) {
+                break;
+            }
+        }
+        if(photoIds.size() < 2) {
+            return;
+        }
+        StringBuilder query = new StringBuilder();
+        for(Long photoId : photoIds) {
+            query.append(query.length() == 0 ? "?photoIds=" : "&photoIds=").append(photoId);
+        }
+        call("photos.zip", get("/albums/" + albumId + "/photos/download" + query));
+    }
+
+    private Long randomPhoto() {
+        Object[] photoIds = photoAlbums.keySet().toArray();
+        return photoIds.length == 0 ? null : (Long) photoIds[ThreadLocalRandom.current().nextInt(photoIds.length)];
+    }
+
+    private boolean call(String endpoint, HttpRequest request) {
+        long startedAt = System.nanoTime();
+        boolean success;
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        recorder.record(endpoint, System.nanoTime() - startedAt, success);
+        return success;
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private HttpRequest upload(Long albumId) {
+        String boundary = "loadtest" + System.nanoTime();
+        String fileName = "upload-" + System.nanoTime() + ".png";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"photos\"; filename=\"" + fileName
+                + "\"\r\nContent-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(png);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(uri("/albums/" + albumId + "/photos"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 5) << 8 | 0x80);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
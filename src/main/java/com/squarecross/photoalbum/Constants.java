@@ -1,6 +1,9 @@
 package com.squarecross.photoalbum;
 
 public class Constants {
-    public static final String PATH_PREFIX = "/Users/kimsubeen/IdeaProjects/photoalbum";
+    //사진 저장 위치. 부하 테스트처럼 임시 디렉토리를 쓸 때는 -Dphotoalbum.path-prefix 로 바꾼다
+    public static final String PATH_PREFIX = System.getProperty("photoalbum.path-prefix", "/Users/kimsubeen/IdeaProjects/photoalbum");
     public static final int THUMB_SIZE = 300;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_RENDITION_SIZE = 4096;
 }
@@ -0,0 +1,64 @@
+package com.squarecross.photoalbum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    //썸네일 생성은 CPU 작업이므로 코어 수만큼 워커를 두고, 큐가 가득 차면 요청 스레드가 직접 처리하게 해서 속도를 조절한다
+    @Bean(name = "thumbnailExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor thumbnailExecutor(@Value("${photoalbum.thumbnail.queue-capacity:1000}") int queueCapacity) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("thumbnail-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    //업로드는 디스크, DB 대기 시간이 대부분이라 코어 수와 별개로 설정값만큼 동시에 처리한다.
+    //큐가 가득 차면 요청 스레드가 직접 처리한다
+    @Bean(name = "uploadExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor uploadExecutor(@Value("${photoalbum.upload.parallelism:8}") int parallelism,
+                                             @Value("${photoalbum.upload.queue-capacity:200}") int queueCapacity) {
+        return new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("upload-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    //zip 다운로드에서 다음 파일들을 미리 읽어두는 스레드. 요청마다 미리 읽는 파일 수는 photoalbum.zip.read-ahead 로 제한된다
+    @Bean(name = "zipExecutor", destroyMethod = "shutdown")
+    public ExecutorService zipExecutor(@Value("${photoalbum.zip.threads:8}") int threads) {
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("zip-read-"));
+    }
+
+    //zip 다운로드 본문을 만드는 스레드. DownloadLimiter 가 동시 다운로드 수를 제한하므로 그 수만큼 두면 기다리는 일이 없다
+    @Bean(name = "zipDownloadExecutor", destroyMethod = "shutdown")
+    public ExecutorService zipDownloadExecutor(@Value("${photoalbum.download.max-concurrent:32}") int threads) {
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("zip-download-"));
+    }
+
+    //앨범 내보내기는 디스크 대역폭을 많이 쓰므로 동시에 몇 개만 만든다
+    @Bean(name = "exportExecutor", destroyMethod = "shutdown")
+    public ExecutorService exportExecutor(@Value("${photoalbum.export.threads:2}") int threads) {
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("export-"));
+    }
+
+    //사진 여러 장 이동처럼 파일 단위 디스크 작업을 병렬로 처리한다
+    @Bean(name = "fileExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor fileExecutor(@Value("${photoalbum.file.parallelism:8}") int parallelism) {
+        return new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                new CustomizableThreadFactory("file-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
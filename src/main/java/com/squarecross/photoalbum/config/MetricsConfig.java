@@ -0,0 +1,38 @@
+package com.squarecross.photoalbum.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class MetricsConfig {
+
+    //서비스 메서드의 @Timed 를 처리한다
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    //작업 스레드 풀의 활성 스레드, 큐 길이, 완료 수
+    @Bean
+    public MeterBinder executorMetrics(@Qualifier("thumbnailExecutor") ThreadPoolExecutor thumbnailExecutor,
+                                       @Qualifier("uploadExecutor") ThreadPoolExecutor uploadExecutor,
+                                       @Qualifier("fileExecutor") ThreadPoolExecutor fileExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(thumbnailExecutor, "thumbnail", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(uploadExecutor, "upload", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(fileExecutor, "file", Tags.empty()).bindTo(registry);
+            Gauge.builder("photoalbum.thumbnail.queue.depth", thumbnailExecutor, executor -> executor.getQueue().size())
+                    .description("썸네일 생성을 기다리는 작업 수")
+                    .register(registry);
+        };
+    }
+}
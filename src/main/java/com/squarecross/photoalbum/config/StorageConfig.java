@@ -0,0 +1,52 @@
+package com.squarecross.photoalbum.config;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.storage.InMemoryObjectStore;
+import com.squarecross.photoalbum.storage.LocalPhotoStorage;
+import com.squarecross.photoalbum.storage.ObjectStoragePhotoStorage;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import com.squarecross.photoalbum.storage.S3ObjectStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+
+@Configuration
+public class StorageConfig {
+
+    //photoalbum.storage.type: local(기본), s3(S3/MinIO), memory(개발, 테스트용)
+    @Bean
+    public PhotoStorage photoStorage(@Value("${photoalbum.storage.type:local}") String type,
+                                     @Value("${photoalbum.storage.s3.endpoint:}") String endpoint,
+                                     @Value("${photoalbum.storage.s3.region:ap-northeast-2}") String region,
+                                     @Value("${photoalbum.storage.s3.bucket:photoalbum}") String bucket,
+                                     @Value("${photoalbum.storage.s3.access-key:}") String accessKey,
+                                     @Value("${photoalbum.storage.s3.secret-key:}") String secretKey) throws IOException {
+        switch (type) {
+            case "local":
+                return new LocalPhotoStorage(Paths.get(Constants.PATH_PREFIX));
+            case "memory":
+                return new ObjectStoragePhotoStorage(new InMemoryObjectStore(), Paths.get(Constants.PATH_PREFIX, "photos", "tmp"));
+            case "s3":
+                S3ClientBuilder builder = S3Client.builder().region(Region.of(region));
+                if(!endpoint.isEmpty()) {
+                    //MinIO 등은 버킷을 호스트가 아닌 경로로 지정한다
+                    builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+                }
+                if(!accessKey.isEmpty()) {
+                    builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+                }
+                return new ObjectStoragePhotoStorage(new S3ObjectStore(builder.build(), bucket), Paths.get(Constants.PATH_PREFIX, "photos", "tmp"));
+            default:
+                throw new IllegalArgumentException(String.format("지원하지 않는 저장소입니다: %s", type));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.squarecross.photoalbum.controller;
 
 import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.CursorPageDto;
 import com.squarecross.photoalbum.service.AlbumService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -39,6 +40,18 @@ public class AlbumController {
 
     }
 
+    //size 파라미터가 있으면 커서 기반 페이지 단위로 조회
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "size")
+    public ResponseEntity<CursorPageDto<AlbumDto>> getAlbumPage
+            (@RequestParam(value = "keyword", required = false, defaultValue = "") final String keyword,
+             @RequestParam(value = "sort", required = false, defaultValue = "byDate") final String sort,
+             @RequestParam(value = "orderBy", required = false, defaultValue = "desc") final String orderBy,
+             @RequestParam(value = "cursor", required = false) final String cursor,
+             @RequestParam(value = "size") final int size) {
+        CursorPageDto<AlbumDto> page = albumService.getAlbumPage(keyword, sort, orderBy, cursor, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/{albumId}", method = RequestMethod.PUT)
     public ResponseEntity<AlbumDto> updateAlbum(@PathVariable("albumId") final long albumId,
                                                 @RequestBody final AlbumDto albumDto) {
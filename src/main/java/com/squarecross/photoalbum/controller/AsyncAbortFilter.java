@@ -0,0 +1,34 @@
+package com.squarecross.photoalbum.controller;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//AsyncResponseWriter 가 본문을 만들다 실패하면 요청을 ASYNC 로 다시 dispatch 한다.
+//여기서 컨트롤러까지 가지 않고 예외를 던지면, 응답이 이미 커밋되어 있으므로 Tomcat 이 마지막 chunk 없이 연결을 끊는다
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AsyncAbortFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Object failure = request.getAttribute(AsyncResponseWriter.FAILURE_ATTRIBUTE);
+        if(failure instanceof Throwable && isAsyncDispatch(request)) {
+            throw new IOException("응답 본문 전송이 중단되었습니다.", (Throwable) failure);
+        }
+        chain.doFilter(request, response);
+    }
+}
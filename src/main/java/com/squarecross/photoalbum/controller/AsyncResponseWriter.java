@@ -0,0 +1,333 @@
+package com.squarecross.photoalbum.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+//응답 본문을 Servlet 3.1 비동기 출력(WriteListener)으로 보낸다.
+//클라이언트가 느려서 소켓 버퍼가 차면 바로 돌아오고, 다시 쓸 수 있을 때 Tomcat 이 onWritePossible 을 불러주므로
+//전송하는 동안 요청 스레드를 잡고 있지 않는다
+@Component
+public class AsyncResponseWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncResponseWriter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //본문을 만들다 실패한 요청에 남기는 예외. AsyncAbortFilter 가 다시 dispatch 된 요청에서 읽는다
+    static final String FAILURE_ATTRIBUTE = AsyncResponseWriter.class.getName() + ".failure";
+
+    //전송이 이 시간 안에 끝나지 않으면 연결을 끊는다
+    @Value("${photoalbum.download.timeout-ms:3600000}")
+    private long timeoutMs;
+
+    //헤더는 미리 설정해 두어야 한다. onComplete 는 전송이 끝나거나 실패하면 불린다.
+    //send 가 startAsync 뒤에 예외를 던지면 호출한 쪽과 이후의 시간 초과가 모두 onComplete 를 부를 수 있으므로 여러 번 불려도 괜찮아야 한다
+    public void send(HttpServletRequest request, HttpServletResponse response,
+                     BodySource source, Runnable onComplete) throws IOException {
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(timeoutMs);
+        Transfer transfer = new Transfer(async, response.getOutputStream(), source, onComplete);
+        async.addListener(transfer);
+        response.getOutputStream().setWriteListener(transfer); //쓸 수 있으면 Tomcat 이 바로 onWritePossible 을 부른다
+        source.onAvailable(transfer::drain); //Pipe 에 쓰는 쪽은 send 가 끝난 뒤에 시작해야 한다
+    }
+
+    //응답 본문. read 는 막히지 않아야 하고, 아직 준비된 내용이 없으면 0 을 돌려준 뒤 준비되면 onAvailable 로 알린다
+    public interface BodySource {
+        //buffer 에 다음 내용을 채우고 채운 바이트 수를 돌려준다. 끝이면 -1
+        int read(ByteBuffer buffer) throws IOException;
+
+        default void onAvailable(Runnable callback) {
+        }
+
+        //전송이 끝나거나 중단되면 불린다
+        void cancel();
+
+        //파일의 position 부터 count 바이트
+        static BodySource of(FileChannel channel, long position, long count) {
+            return new BodySource() {
+                private long offset = position;
+                private long remaining = count;
+
+                @Override
+                public int read(ByteBuffer buffer) throws IOException {
+                    if(remaining <= 0) {
+                        return -1;
+                    }
+                    if(buffer.remaining() > remaining) {
+                        buffer.limit(buffer.position() + (int) remaining);
+                    }
+                    int n = channel.read(buffer, offset);
+                    if(n < 0) {
+                        throw new IOException("파일이 전송 중에 줄어들었습니다.");
+                    }
+                    offset += n;
+                    remaining -= n;
+                    return n;
+                }
+
+                @Override
+                public void cancel() {
+                    closeQuietly(channel);
+                }
+            };
+        }
+
+        //저장소에서 구간을 읽는 스트림. 읽기는 저장소 응답을 기다릴 수 있지만 느린 클라이언트를 기다리지는 않는다
+        static BodySource of(InputStream in) {
+            return new BodySource() {
+                @Override
+                public int read(ByteBuffer buffer) throws IOException {
+                    int n = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    if(n > 0) {
+                        buffer.position(buffer.position() + n);
+                    }
+                    return n; //buffer 가 비어 있지 않으면 InputStream.read 는 0 을 돌려주지 않는다
+                }
+
+                @Override
+                public void cancel() {
+                    closeQuietly(in);
+                }
+            };
+        }
+    }
+
+    //다른 스레드가 OutputStream 으로 쓰는 내용(zip 등)을 응답으로 넘긴다.
+    //버퍼가 capacity 만큼 차면 쓰는 쪽이 기다리므로 클라이언트가 느려도 메모리는 capacity 를 넘지 않는다
+    public static final class Pipe extends OutputStream implements BodySource {
+        private final int capacity;
+        private final Deque<ByteBuffer> chunks = new ArrayDeque<>();
+        private int buffered;
+        private boolean finished;
+        private boolean cancelled;
+        private IOException failure;
+        private Runnable listener;
+
+        public Pipe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(len == 0) {
+                return;
+            }
+            Runnable notify;
+            synchronized (this) {
+                while (!cancelled && buffered >= capacity) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if(cancelled || finished) {
+                    throw new IOException("다운로드가 중단되었습니다.");
+                }
+                chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+                buffered += len;
+                notify = listener;
+            }
+            if(notify != null) {
+                notify.run();
+            }
+        }
+
+        //쓰는 쪽이 다 썼을 때
+        @Override
+        public void close() {
+            finish(null);
+        }
+
+        //쓰는 쪽이 실패했을 때. 남은 내용을 보내지 않고 전송을 끝낸다
+        public void fail(IOException e) {
+            finish(e);
+        }
+
+        private void finish(IOException e) {
+            Runnable notify;
+            synchronized (this) {
+                if(finished) {
+                    return;
+                }
+                finished = true;
+                failure = e;
+                notify = listener;
+            }
+            if(notify != null) {
+                notify.run();
+            }
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer buffer) throws IOException {
+            if(failure != null) {
+                throw failure;
+            }
+            int n = 0;
+            ByteBuffer head;
+            while (buffer.hasRemaining() && (head = chunks.peek()) != null) {
+                int length = Math.min(buffer.remaining(), head.remaining());
+                buffer.put(head.array(), head.position(), length);
+                head.position(head.position() + length);
+                if(!head.hasRemaining()) {
+                    chunks.poll();
+                }
+                n += length;
+            }
+            if(n == 0) {
+                return finished ? -1 : 0;
+            }
+            buffered -= n;
+            notifyAll();
+            return n;
+        }
+
+        @Override
+        public synchronized void onAvailable(Runnable callback) {
+            this.listener = callback;
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            chunks.clear();
+            notifyAll();
+        }
+    }
+
+    private static final class Transfer implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final BodySource source;
+        private final Runnable onComplete;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean done;
+
+        private Transfer(AsyncContext async, ServletOutputStream out, BodySource source, Runnable onComplete) {
+            this.async = async;
+            this.out = out;
+            this.source = source;
+            this.onComplete = onComplete;
+        }
+
+        //Tomcat 스레드(onWritePossible)나 Pipe 에 쓰는 스레드에서 불린다. isReady 가 false 면 다시 불릴 때까지 돌아간다
+        private synchronized void drain() {
+            if(done) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    buffer.clear();
+                    int n;
+                    try {
+                        n = source.read(buffer);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Async response body failed: {}", e.getMessage());
+                        finish(e);
+                        return;
+                    }
+                    if(n < 0) {
+                        finish(null);
+                        return;
+                    }
+                    if(n == 0) {
+                        return; //내용이 준비되면 source 가 다시 부른다
+                    }
+                    out.write(buffer.array(), 0, n);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Async response aborted: {}", e.getMessage()); //클라이언트가 연결을 끊었다
+                finish(null);
+            }
+        }
+
+        //failure 는 본문을 만들다(source 에서) 실패한 경우. 이때 complete 하면 마지막 chunk 가 나가서 잘린 본문이
+        //정상 응답처럼 보이므로, 요청을 다시 dispatch 해서 AsyncAbortFilter 가 예외를 던지게 한다.
+        //커밋된 응답에서 예외가 나면 Tomcat 은 연결을 끊는다
+        private synchronized void finish(Throwable failure) {
+            if(done) {
+                return;
+            }
+            done = true;
+            source.cancel();
+            try {
+                onComplete.run();
+            } finally {
+                try {
+                    if(failure != null) {
+                        async.getRequest().setAttribute(FAILURE_ATTRIBUTE, failure);
+                        async.dispatch();
+                    } else {
+                        async.complete();
+                    }
+                } catch (IllegalStateException e) {
+                    //오류, 시간 초과로 Tomcat 이 이미 끝낸 요청
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            finish(null);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            finish(null);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.debug("Async response timed out");
+            finish(null);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish(null);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            //이미 닫혔거나 닫을 수 없어도 전송은 끝났다
+        }
+    }
+}
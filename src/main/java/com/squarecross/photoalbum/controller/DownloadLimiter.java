@@ -0,0 +1,43 @@
+package com.squarecross.photoalbum.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//동시에 진행되는 다운로드 수를 제한한다. 자리가 없으면 기다리지 않고 503 과 Retry-After 로 바로 응답한다
+@Component
+public class DownloadLimiter {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final Semaphore permits;
+
+    public DownloadLimiter(@Value("${photoalbum.download.max-concurrent:32}") int maxConcurrent) {
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    //자리를 얻었으면 다운로드가 끝날 때 부를 release 를 돌려준다. 없으면 503 을 보내고 null.
+    //release 는 요청 스레드의 finally 와 비동기 전송의 완료 콜백에서 모두 불릴 수 있으므로 여러 번 불려도 자리는 한 번만 돌려준다
+    public Runnable tryAcquire(HttpServletResponse response) throws IOException {
+        if(!permits.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "다운로드 요청이 많습니다. 잠시 후 다시 시도해주세요.");
+            return null;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if(released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+    }
+
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,70 @@
+package com.squarecross.photoalbum.controller;
+
+import com.squarecross.photoalbum.dto.ExportJobDto;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/albums/{albumId}/exports")
+public class ExportController {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private FileResponseWriter fileResponseWriter;
+
+    @Autowired
+    private DownloadLimiter downloadLimiter;
+
+    @RequestMapping(value = "", method = RequestMethod.POST)
+    public ResponseEntity<ExportJobDto> createExport(@PathVariable("albumId") final Long albumId) {
+        ExportJobDto exportJobDto = exportService.createExport(albumId);
+        return new ResponseEntity<>(exportJobDto, HttpStatus.ACCEPTED);
+    }
+
+    @RequestMapping(value = "/{exportId}", method = RequestMethod.GET)
+    public ResponseEntity<ExportJobDto> getExport(@PathVariable("albumId") final Long albumId,
+                                                  @PathVariable("exportId") final Long exportId) {
+        ExportJobDto exportJobDto = exportService.getExport(albumId, exportId);
+        return new ResponseEntity<>(exportJobDto, HttpStatus.OK);
+    }
+
+    //완성된 압축 파일은 Range 요청으로 이어받을 수 있다.
+    //앨범 전체를 담은 큰 파일이라 zip 다운로드와 같은 DownloadLimiter 자리를 전송이 끝날 때까지 잡는다
+    @RequestMapping(value = "/{exportId}/download", method = RequestMethod.GET)
+    public void downloadExport(@PathVariable("albumId") final Long albumId,
+                               @PathVariable("exportId") final Long exportId,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Runnable release = downloadLimiter.tryAcquire(response);
+        if(release == null) {
+            return;
+        }
+        boolean handedOff = false;
+        try {
+            PhotoFile artifact = exportService.openArtifact(albumId, exportId);
+            handedOff = true; //이후에는 write 가 끝날 때 파일과 다운로드 자리를 돌려준다
+            fileResponseWriter.write(request, response, artifact, true, () -> {
+                exportService.closeArtifact(exportId);
+                release.run();
+            });
+        } finally {
+            if(!handedOff) {
+                release.run();
+            }
+        }
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> handleIllegalStateException(IllegalStateException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
+    }
+}
@@ -0,0 +1,196 @@
+package com.squarecross.photoalbum.controller;
+
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import com.squarecross.photoalbum.storage.StorageObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+
+//디스크나 저장소의 파일을 Range, ETag, Last-Modified 를 지원하면서 내려준다.
+//Tomcat NIO 커넥터에서는 sendfile 로, 그 외에는 비동기 출력(AsyncResponseWriter)으로 보내므로 느린 클라이언트가 요청 스레드를 잡지 않는다
+@Component
+public class FileResponseWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Autowired
+    private AsyncResponseWriter asyncResponseWriter;
+
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      PhotoFile file, boolean attachment) throws IOException {
+        writeFile(request, response, file, attachment, null);
+    }
+
+    //onComplete 는 본문을 다 보냈거나 실패했을 때 불린다. 비동기로 보내면 이 메소드가 돌아온 뒤에 불린다.
+    //sendfile 은 요청 처리가 끝난 뒤에 Tomcat 이 보내서 끝나는 시점을 알 수 없으므로, 이때는 sendfile 대신 비동기 출력으로 보낸다
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      PhotoFile file, boolean attachment, Runnable onComplete) throws IOException {
+        writeFile(request, response, file, attachment, Objects.requireNonNull(onComplete));
+    }
+
+    private void writeFile(HttpServletRequest request, HttpServletResponse response,
+                           PhotoFile file, boolean attachment, Runnable onComplete) throws IOException {
+        boolean async = false;
+        try {
+            async = file.getPath() != null
+                    ? write(request, response, file.getPath(), file.getFileName(), attachment, onComplete)
+                    : writeStored(request, response, file, attachment, onComplete);
+        } finally {
+            if(!async && onComplete != null) {
+                onComplete.run();
+            }
+        }
+    }
+
+    //저장소의 사진이면 로컬 파일일 때만 sendfile 을 쓰고, 아니면 저장소에서 필요한 구간만 읽어 보낸다
+    private boolean writeStored(HttpServletRequest request, HttpServletResponse response,
+                                PhotoFile file, boolean attachment, Runnable onComplete) throws IOException {
+        StorageObject object;
+        try {
+            object = photoStorage.stat(file.getKey());
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException(String.format("파일 %s 이 존재하지 않습니다.", file.getFileName()));
+        }
+        return write(request, response, object.getSize(), object.getLastModified(), object.getLocalPath(),
+                (offset, length) -> photoStorage.open(file.getKey(), offset, length), file.getFileName(), attachment, onComplete);
+    }
+
+    private boolean write(HttpServletRequest request, HttpServletResponse response,
+                          Path path, String fileName, boolean attachment, Runnable onComplete) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException(String.format("파일 %s 이 존재하지 않습니다.", fileName));
+        }
+        return write(request, response, attributes.size(), attributes.lastModifiedTime().toMillis(), path, null,
+                fileName, attachment, onComplete);
+    }
+
+    //본문을 비동기로 보내기 시작했으면 true. 이때 onComplete 는 AsyncResponseWriter 가 부른다. onComplete 가 null 이면 sendfile 을 쓸 수 있다
+    private boolean write(HttpServletRequest request, HttpServletResponse response, long length, long lastModified,
+                          Path path, RangeOpener opener, String fileName, boolean attachment,
+                          Runnable onComplete) throws IOException {
+        String etag = etag(length, lastModified);
+
+        //If-None-Match, If-Modified-Since 가 맞으면 304 로 응답하고 끝낸다
+        if(new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return false;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.builder(attachment ? "attachment" : "inline")
+                        .filename(fileName, StandardCharsets.UTF_8).build().toString());
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag, lastModified);
+        if(range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return false;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        photoMetrics.bytesOut("file", count);
+
+        if(path != null && onComplete == null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            //응답 본문은 Tomcat 이 요청 처리가 끝난 뒤 sendfile 로 직접 보낸다
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return false;
+        }
+
+        AsyncResponseWriter.BodySource source = path != null
+                ? AsyncResponseWriter.BodySource.of(FileChannel.open(path, StandardOpenOption.READ), start, count)
+                : AsyncResponseWriter.BodySource.of(opener.open(start, count));
+        try {
+            asyncResponseWriter.send(request, response, source, onComplete != null ? onComplete : () -> {});
+        } catch (IOException | RuntimeException e) {
+            source.cancel();
+            throw e;
+        }
+        return true;
+    }
+
+    //여러 구간 요청은 전체 파일로 응답한다. If-Range 가 현재 버전과 다르면 Range 를 무시한다
+    private HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if(rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if(ifRange != null && !ifRange.equals(etag)) {
+            if(ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                return null;
+            }
+            try {
+                if(request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeOpener {
+        InputStream open(long offset, long length) throws IOException;
+    }
+
+    //크기와 수정 시각이 같으면 같은 내용으로 본다
+    static String etag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+}
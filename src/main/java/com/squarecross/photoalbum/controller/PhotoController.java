@@ -1,21 +1,31 @@
 package com.squarecross.photoalbum.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.squarecross.photoalbum.dto.CursorPageDto;
 import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.dto.PhotoUploadResultDto;
+import com.squarecross.photoalbum.export.ZipExporter;
+import com.squarecross.photoalbum.metrics.CountingOutputStream;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
 import com.squarecross.photoalbum.service.PhotoService;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
+import com.squarecross.photoalbum.service.RenditionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/albums/{albumId}/photos")
@@ -23,6 +33,35 @@ public class PhotoController {
     @Autowired
     private PhotoService photoService;
 
+    @Autowired
+    private FileResponseWriter fileResponseWriter;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private ZipExporter zipExporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AsyncResponseWriter asyncResponseWriter;
+
+    @Autowired
+    private DownloadLimiter downloadLimiter;
+
+    @Autowired
+    @Qualifier("zipDownloadExecutor")
+    private ExecutorService zipDownloadExecutor;
+
+    //zip 을 만드는 스레드가 응답보다 앞서 쌓아둘 수 있는 최대 크기
+    @Value("${photoalbum.download.pipe-bytes:1048576}")
+    private int pipeBytes;
+
     @RequestMapping(value = "/{photoId}", method = RequestMethod.GET)
     public ResponseEntity<PhotoDto> getPhotoInfo(@PathVariable final Long photoId) {
         PhotoDto photoDto = photoService.getPhoto(photoId);
@@ -39,18 +78,70 @@ public class PhotoController {
         return new ResponseEntity<>(photoDtos, HttpStatus.OK);
     }
 
+    //stream 파라미터가 있으면 목록을 만들지 않고 DB 에서 읽는 대로 내려준다.
+    //stream=ndjson 은 한 줄에 사진 하나, stream=array 는 JSON 배열. Content-Length 없이 chunked 로 전송된다
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "stream")
+    public void streamPhotoList(
+            @PathVariable final Long albumId,
+            @RequestParam(value = "sort", required = false, defaultValue = "byDate") final String sort,
+            @RequestParam(value = "orderBy", required = false, defaultValue = "desc") final String orderBy,
+            @RequestParam(value = "stream") final String format,
+            HttpServletResponse response) throws IOException {
+        boolean ndjson = format.isEmpty() || format.equals("ndjson");
+        if(!ndjson && !format.equals("array")) {
+            throw new IllegalArgumentException("알 수 없는 스트리밍 형식입니다.");
+        }
+        photoService.checkPhotoListSort(sort); //응답을 쓰기 시작한 뒤에는 오류 상태를 보낼 수 없으므로 먼저 확인
+
+        response.setContentType(ndjson ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        //중간에 실패하면 generator 를 닫지 않는다. 닫으면 빠진 ']' 를 채워서 잘린 배열이 완전한 응답처럼 보이기 때문
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        try {
+            if(ndjson) {
+                generator.setRootValueSeparator(null); //줄바꿈은 사진마다 직접 쓴다
+                photoService.streamPhotoList(albumId, sort, orderBy, photoDto -> {
+                    generator.writeObject(photoDto);
+                    generator.writeRaw('\n');
+                });
+            } else {
+                generator.writeStartArray();
+                photoService.streamPhotoList(albumId, sort, orderBy, generator::writeObject);
+                generator.writeEndArray();
+            }
+        } catch (RuntimeException e) {
+            //응답이 이미 나간 뒤에는 예외 핸들러가 본문을 덧붙이지 않도록 IOException 으로 던진다.
+            //Tomcat 은 커밋된 응답에서 예외가 나면 마지막 chunk 없이 연결을 끊으므로 클라이언트는 실패를 알 수 있다
+            throw new IOException("사진 목록 전송이 중단되었습니다.", e);
+        }
+        generator.close();
+    }
+
+    //size 파라미터가 있으면 커서 기반 페이지 단위로 조회
+    @RequestMapping(value = "", method = RequestMethod.GET, params = {"size", "!stream"})
+    public ResponseEntity<CursorPageDto<PhotoDto>> getPhotoPage(
+            @PathVariable final Long albumId,
+            @RequestParam(value = "sort", required = false, defaultValue = "byDate") final String sort,
+            @RequestParam(value = "orderBy", required = false, defaultValue = "desc") final String orderBy,
+            @RequestParam(value = "cursor", required = false) final String cursor,
+            @RequestParam(value = "size") final int size) {
+        CursorPageDto<PhotoDto> page = photoService.getPhotoPage(albumId, sort, orderBy, cursor, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "", method = RequestMethod.POST)
-    public ResponseEntity<List<PhotoDto>> uploadPhotos(@PathVariable("albumId") final Long albumId,
-                                                       @RequestParam("photos")MultipartFile[] files) {
-        List<PhotoDto> photoDtos = new ArrayList<>();
+    public ResponseEntity<List<PhotoUploadResultDto>> uploadPhotos(@PathVariable("albumId") final Long albumId,
+                                                                   @RequestParam("photos")MultipartFile[] files) {
         for(MultipartFile file : files) {
-            if(file.getContentType().startsWith("image") == false) {
+            if(file.getContentType() == null || file.getContentType().startsWith("image") == false) {
                 throw new IllegalArgumentException("이미지 파일이 아닙니다.");
             }
-            PhotoDto photoDto = photoService.savePhoto(file, albumId);
-            photoDtos.add(photoDto);
         }
-        return new ResponseEntity<>(photoDtos, HttpStatus.OK);
+        List<PhotoUploadResultDto> results = photoService.savePhotos(files, albumId);
+        //일부만 저장됐으면 207 로 알리고, 파일마다 사진 또는 실패 사유를 요청 순서대로 내려준다
+        boolean allStored = results.stream().allMatch(PhotoUploadResultDto::isStored);
+        return new ResponseEntity<>(results, allStored ? HttpStatus.OK : HttpStatus.MULTI_STATUS);
     }
 
     @RequestMapping(value = "/move", method = RequestMethod.PUT)
@@ -58,12 +149,7 @@ public class PhotoController {
                                                      @RequestParam("toAlbumId") final Long toAlbumId,
                                                      @RequestParam("photoIds") Long[] photoIds) {
 
-        List<PhotoDto> photoDtos = new ArrayList<>();
-
-        for(Long photoId : photoIds) {
-            PhotoDto photoDto = photoService.movePhoto(fromAlbumId, toAlbumId, photoId);
-            photoDtos.add(photoDto);
-        }
+        List<PhotoDto> photoDtos = photoService.movePhotos(fromAlbumId, toAlbumId, photoIds);
 
         //앨범 옮긴 사진 리스트 반환
         return new ResponseEntity<>(photoDtos, HttpStatus.OK);
@@ -76,59 +162,83 @@ public class PhotoController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    @RequestMapping(value = "/download", method = RequestMethod.GET)
-    public void downloadPhotos( @PathVariable("albumId") final Long albumId,
-                                @RequestParam("photoIds") Long[] photoIds, HttpServletResponse response) {
-        try {
-            if (photoIds.length == 1) {
-                File file = photoService.getImageFile(photoIds[0]); //file 하나일 때
-
-                response.setStatus(HttpServletResponse.SC_OK);
-                response.setContentType("image/jpeg");
-                response.addHeader("Content-Disposition", "attachment;filename="+ file.getName());
-
-                OutputStream outputStream = response.getOutputStream();
-                IOUtils.copy(new FileInputStream(file), outputStream);
-                outputStream.close();
-            } else {
-                response.setStatus(HttpServletResponse.SC_OK);
-                response.setContentType("application/zip");
-                response.addHeader("Content-Disposition", "attachment; filename=" + albumId + "_dump.zip");
-
-                FileOutputStream fos = null;
-                ZipOutputStream zipOut = null;
-                FileInputStream fis = null;
-
-                try {
-                    zipOut = new ZipOutputStream(response.getOutputStream());
+    @RequestMapping(value = "/{photoId}/original", method = RequestMethod.GET)
+    public void getOriginal(@PathVariable final Long photoId,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PhotoFile photoFile = photoService.getPhotoFile(photoId, false);
+        fileResponseWriter.write(request, response, photoFile, false);
+    }
 
-                    List<File> files = photoService.getImageFileList(photoIds);
+    @RequestMapping(value = "/{photoId}/thumb", method = RequestMethod.GET)
+    public void getThumb(@PathVariable final Long photoId,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PhotoFile photoFile = photoService.getPhotoFile(photoId, true);
+        fileResponseWriter.write(request, response, photoFile, false);
+    }
 
-                    for (File file : files) {
-                        zipOut.putNextEntry(new ZipEntry(file.getName()));
-                        fis = new FileInputStream(file);
+    //요청한 크기로 줄인 사진. 처음 요청할 때 원본에서 만들고 이후에는 디스크 캐시에서 내려준다
+    @RequestMapping(value = "/{photoId}/render", method = RequestMethod.GET)
+    public void getRendition(@PathVariable final Long photoId,
+                             @RequestParam(value = "w", required = false) Integer width,
+                             @RequestParam(value = "h", required = false) Integer height,
+                             @RequestParam(value = "fit", required = false, defaultValue = "contain") String fit,
+                             @RequestParam(value = "format", required = false) String format,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PhotoFile photoFile = renditionService.render(photoId, width, height, fit, format);
+        fileResponseWriter.write(request, response, photoFile, false);
+    }
 
-                        StreamUtils.copy(fis, zipOut);
+    //본문은 sendfile 이나 비동기 출력으로 보내므로 느린 클라이언트가 요청 스레드를 잡지 않는다.
+    //사진 한 장은 sendfile 로 보내도록 그대로 두고, 전용 스레드와 버퍼를 쓰는 zip 만 DownloadLimiter 로 제한해서 넘으면 503 으로 응답한다
+    @RequestMapping(value = "/download", method = RequestMethod.GET)
+    public void downloadPhotos( @PathVariable("albumId") final Long albumId,
+                                @RequestParam("photoIds") Long[] photoIds,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (photoIds.length == 1) {
+            PhotoFile photoFile = photoService.getPhotoFile(photoIds[0], false); //file 하나일 때
+            fileResponseWriter.write(request, response, photoFile, true);
+            return;
+        }
 
-                        fis.close();
-                        zipOut.closeEntry();
+        Runnable release = downloadLimiter.tryAcquire(response);
+        if(release == null) {
+            return;
+        }
+        boolean handedOff = false;
+        try {
+            List<PhotoFile> files = photoService.getPhotoFileList(photoIds);
+
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/zip");
+            response.addHeader("Content-Disposition", "attachment; filename=" + albumId + "_dump.zip");
+
+            //ZipOutputStream 은 쓰는 쪽이 밀어넣는 방식이라 전용 스레드에서 만들고, 응답은 Pipe 에서 읽는 만큼만 보낸다.
+            //응답이 이미 나가기 시작한 뒤라 실패해도 상태 코드는 바꿀 수 없다
+            AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(pipeBytes);
+            CountingOutputStream out = new CountingOutputStream(pipe);
+            asyncResponseWriter.send(request, response, pipe, () -> {
+                photoMetrics.bytesOut("zip", out.getCount());
+                release.run();
+            });
+            handedOff = true;
+            try {
+                zipDownloadExecutor.execute(() -> {
+                    try {
+                        zipExporter.export(files, out);
+                        pipe.close();
+                    } catch (IOException e) {
+                        pipe.fail(e);
+                    } catch (RuntimeException e) {
+                        pipe.fail(new IOException(e));
                     }
-
-                    zipOut.close();
-
-                } catch (Exception e) {
-                    System.out.println(e.getMessage());
-                    try { if(fis != null)fis.close(); } catch (IOException e1) {System.out.println(e1.getMessage());/*ignore*/}
-                    try { if(zipOut != null)zipOut.closeEntry();} catch (IOException e2) {System.out.println(e2.getMessage());/*ignore*/}
-                    try { if(zipOut != null)zipOut.close();} catch (IOException e3) {System.out.println(e3.getMessage());/*ignore*/}
-                    try { if(fos != null)fos.close(); } catch (IOException e4) {System.out.println(e4.getMessage());/*ignore*/}
-                    throw new RuntimeException(e);
-                }
+                });
+            } catch (RejectedExecutionException e) {
+                pipe.fail(new IOException(e)); //종료 중. 전송을 중단하면 완료 콜백이 release 를 부른다
+            }
+        } finally {
+            if(!handedOff) {
+                release.run();
             }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Error");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
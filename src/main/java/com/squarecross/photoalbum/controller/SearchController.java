@@ -0,0 +1,44 @@
+package com.squarecross.photoalbum.controller;
+
+import com.squarecross.photoalbum.dto.CursorPageDto;
+import com.squarecross.photoalbum.dto.SearchResultDto;
+import com.squarecross.photoalbum.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    //type: all(기본), album, photo
+    @RequestMapping(value = "", method = RequestMethod.GET)
+    public ResponseEntity<CursorPageDto<SearchResultDto>> search
+            (@RequestParam(value = "q") final String keyword,
+             @RequestParam(value = "type", required = false, defaultValue = "all") final String type,
+             @RequestParam(value = "cursor", required = false) final String cursor,
+             @RequestParam(value = "size", required = false, defaultValue = "20") final int size) {
+        CursorPageDto<SearchResultDto> page = searchService.search(keyword, type, cursor, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/autocomplete", method = RequestMethod.GET)
+    public ResponseEntity<List<String>> autocomplete
+            (@RequestParam(value = "q") final String prefix,
+             @RequestParam(value = "type", required = false, defaultValue = "all") final String type,
+             @RequestParam(value = "size", required = false, defaultValue = "10") final int size) {
+        List<String> suggestions = searchService.autocomplete(prefix, type, size);
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(exception.getMessage());
+    }
+}
@@ -0,0 +1,18 @@
+package com.squarecross.photoalbum.controller;
+
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewFilter;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+
+//spring.jpa.open-in-view 가 요청 동안 열어두는 EntityManager 는 처음 받은 DB 커넥션을 응답이 끝날 때까지 잡고 있다.
+//stream 파라미터가 있는 사진 목록 요청은 배치마다 트랜잭션을 열고 닫으므로, 여기서는 EntityManager 를 열지 않아 배치 사이에 커넥션을 돌려준다.
+//이 빈이 있으면 Spring Boot 는 기본 OpenEntityManagerInViewInterceptor 를 등록하지 않고, 나머지 요청은 이전처럼 열어둔다
+@Component
+public class StreamingAwareEntityManagerInViewFilter extends OpenEntityManagerInViewFilter {
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) && request.getParameter("stream") != null;
+    }
+}
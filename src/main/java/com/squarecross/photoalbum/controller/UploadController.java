@@ -0,0 +1,71 @@
+package com.squarecross.photoalbum.controller;
+
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.UploadSessionDto;
+import com.squarecross.photoalbum.service.UploadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+//이어받기 업로드. 청크 본문은 multipart 가 아닌 요청 본문 그대로 받으므로 multipart 크기 제한, 임시 파일 버퍼링이 없다
+@RestController
+@RequestMapping("/albums/{albumId}/uploads")
+public class UploadController {
+
+    @Autowired
+    private UploadService uploadService;
+
+    @RequestMapping(value = "", method = RequestMethod.POST)
+    public ResponseEntity<UploadSessionDto> createUpload(@PathVariable("albumId") final Long albumId,
+                                                         @RequestParam("fileName") final String fileName,
+                                                         @RequestParam("size") final long size,
+                                                         @RequestParam("sha256") final String sha256) throws IOException {
+        UploadSessionDto uploadSessionDto = uploadService.createSession(albumId, fileName, size, sha256);
+        return new ResponseEntity<>(uploadSessionDto, HttpStatus.CREATED);
+    }
+
+    //이어서 올릴 때 받지 못한 청크를 확인한다
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.GET)
+    public ResponseEntity<UploadSessionDto> getUpload(@PathVariable("albumId") final Long albumId,
+                                                      @PathVariable("uploadId") final String uploadId) {
+        UploadSessionDto uploadSessionDto = uploadService.getSession(albumId, uploadId);
+        return new ResponseEntity<>(uploadSessionDto, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/{uploadId}/chunks/{index}", method = RequestMethod.PUT)
+    public ResponseEntity<UploadSessionDto> putChunk(@PathVariable("albumId") final Long albumId,
+                                                     @PathVariable("uploadId") final String uploadId,
+                                                     @PathVariable("index") final int index,
+                                                     HttpServletRequest request) throws IOException {
+        UploadSessionDto uploadSessionDto = uploadService.writeChunk(albumId, uploadId, index, request.getInputStream());
+        return new ResponseEntity<>(uploadSessionDto, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/{uploadId}/complete", method = RequestMethod.POST)
+    public ResponseEntity<PhotoDto> completeUpload(@PathVariable("albumId") final Long albumId,
+                                                   @PathVariable("uploadId") final String uploadId) throws IOException {
+        PhotoDto photoDto = uploadService.complete(albumId, uploadId);
+        return new ResponseEntity<>(photoDto, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> abortUpload(@PathVariable("albumId") final Long albumId,
+                                            @PathVariable("uploadId") final String uploadId) throws IOException {
+        uploadService.abort(albumId, uploadId);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(exception.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> handleIllegalStateException(IllegalStateException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
+    }
+}
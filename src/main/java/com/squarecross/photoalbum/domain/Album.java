@@ -1,5 +1,6 @@
 package com.squarecross.photoalbum.domain;
 
+import com.squarecross.photoalbum.search.SearchIndexListener;
 import org.hibernate.annotations.CreationTimestamp;
 
 import javax.persistence.*;
@@ -8,7 +9,10 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "album", schema = "photo_album", uniqueConstraints = {@UniqueConstraint(columnNames = "album_id")})
+@Table(name = "album", schema = "photo_album", uniqueConstraints = {@UniqueConstraint(columnNames = "album_id")},
+        indexes = {@Index(name = "idx_album_created_at", columnList = "created_at, album_id"),
+                @Index(name = "idx_album_album_name", columnList = "album_name, album_id")})
+@EntityListeners(SearchIndexListener.class)
 public class Album {
 
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "album", cascade = CascadeType.ALL)
@@ -26,6 +30,19 @@ public class Album {
     @CreationTimestamp
     private Date createdAt;
 
+    //사진 수, 전체 크기, 최신 사진 4장의 썸네일. 사진이 추가, 삭제, 이동될 때 같은 트랜잭션에서 갱신한다.
+    //null 이면 아직 집계되지 않은 앨범이라 사진 테이블에서 직접 센다.
+    //값은 AlbumRepository 의 bulk update 로만 바꾼다. 앨범명 변경처럼 엔티티를 저장할 때 읽어둔 값으로 덮어쓰지 않도록 updatable = false
+    @Column(name = "photo_count", unique = false, nullable = true, updatable = false)
+    private Integer photoCount;
+
+    @Column(name = "total_bytes", unique = false, nullable = true, updatable = false)
+    private Long totalBytes;
+
+    //최신순, 줄바꿈으로 구분
+    @Column(name = "cover_thumb_urls", unique = false, nullable = true, length = 2048, updatable = false)
+    private String coverThumbUrls;
+
     public Album(){};
 
     public Long getAlbumId() {
@@ -52,4 +69,28 @@ public class Album {
         this.createdAt = createdAt;
     }
 
+    public Integer getPhotoCount() {
+        return photoCount;
+    }
+
+    public void setPhotoCount(Integer photoCount) {
+        this.photoCount = photoCount;
+    }
+
+    public Long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(Long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public String getCoverThumbUrls() {
+        return coverThumbUrls;
+    }
+
+    public void setCoverThumbUrls(String coverThumbUrls) {
+        this.coverThumbUrls = coverThumbUrls;
+    }
+
 }
@@ -0,0 +1,65 @@
+package com.squarecross.photoalbum.domain;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.util.Date;
+
+//삭제된 앨범의 툼스톤. 앨범과 사진 행은 바로 지우고, 남은 파일은 백그라운드에서 조금씩 지운다
+@Entity
+@Table(name = "album_reclaim_task", schema = "photo_album")
+public class AlbumReclaimTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "task_id", unique = true, nullable = false)
+    private Long taskId;
+
+    @Column(name = "album_id", unique = true, nullable = false)
+    private Long albumId;
+
+    @Column(name = "deleted_files", unique = false, nullable = false)
+    private long deletedFiles;
+
+    @Column(name = "created_at", unique = false, nullable = true)
+    @CreationTimestamp
+    private Date createdAt;
+
+    public AlbumReclaimTask(){};
+
+    public AlbumReclaimTask(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public long getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public void setDeletedFiles(long deletedFiles) {
+        this.deletedFiles = deletedFiles;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
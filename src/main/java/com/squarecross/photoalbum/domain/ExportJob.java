@@ -0,0 +1,140 @@
+package com.squarecross.photoalbum.domain;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "export_job", schema = "photo_album",
+        indexes = {@Index(name = "idx_export_job_album_fingerprint", columnList = "album_id, fingerprint")})
+public class ExportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "export_id", unique = true, nullable = false)
+    private Long exportId;
+
+    @Column(name = "album_id", unique = false, nullable = false)
+    private Long albumId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", unique = false, nullable = false, length = 16)
+    private ExportStatus status;
+
+    //앨범 사진 구성(ID, 파일명, 경로, 크기)의 해시. 같으면 만들어둔 압축 파일을 다시 쓴다
+    @Column(name = "fingerprint", unique = false, nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(name = "total_count", unique = false, nullable = false)
+    private int totalCount;
+
+    @Column(name = "processed_count", unique = false, nullable = false)
+    private int processedCount;
+
+    @Column(name = "artifact_size", unique = false, nullable = true)
+    private Long artifactSize;
+
+    @Column(name = "error_message", unique = false, nullable = true)
+    private String errorMessage;
+
+    @Column(name = "created_at", unique = false, nullable = true)
+    @CreationTimestamp
+    private Date createdAt;
+
+    @Column(name = "completed_at", unique = false, nullable = true)
+    private Date completedAt;
+
+    @Column(name = "expires_at", unique = false, nullable = true)
+    private Date expiresAt;
+
+    public ExportJob(){};
+
+    public Long getExportId() {
+        return exportId;
+    }
+
+    public void setExportId(Long exportId) {
+        this.exportId = exportId;
+    }
+
+    public Long getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public ExportStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExportStatus status) {
+        this.status = status;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public void setProcessedCount(int processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    public Long getArtifactSize() {
+        return artifactSize;
+    }
+
+    public void setArtifactSize(Long artifactSize) {
+        this.artifactSize = artifactSize;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Date completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.squarecross.photoalbum.domain;
+
+public enum ExportStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    EXPIRED //TTL 이 지나 압축 파일을 지운 상태
+}
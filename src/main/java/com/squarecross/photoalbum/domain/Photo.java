@@ -1,14 +1,23 @@
 package com.squarecross.photoalbum.domain;
 
+import com.squarecross.photoalbum.search.SearchIndexListener;
 import org.hibernate.annotations.CreationTimestamp;
 
 import javax.persistence.*;
 import java.util.Date;
 
 @Entity
-@Table(name = "photo", schema = "photo_album", uniqueConstraints = {@UniqueConstraint(columnNames = "photo_id")})
+@Table(name = "photo", schema = "photo_album", uniqueConstraints = {@UniqueConstraint(columnNames = "photo_id"),
+                @UniqueConstraint(name = Photo.FILE_NAME_CONSTRAINT, columnNames = {"album_id", "file_name"})},
+        indexes = {@Index(name = "idx_photo_album_uploaded_at", columnList = "album_id, uploaded_at, photo_id"),
+                @Index(name = "idx_photo_album_file_name", columnList = "album_id, file_name, photo_id"),
+                @Index(name = "idx_photo_content_hash", columnList = "content_hash")})
+@EntityListeners(SearchIndexListener.class)
 public class Photo {
 
+    //앨범 안에서 파일명이 겹치지 않게 하는 제약. 예전 DB 에는 FileNameConstraintMigration 이 중복을 정리한 뒤 만든다
+    public static final String FILE_NAME_CONSTRAINT = "uk_photo_album_file_name";
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "album_id")
     private Album album;
@@ -34,6 +43,14 @@ public class Photo {
     @CreationTimestamp
     private Date uploadedAt;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "thumb_status", unique = false, nullable = true, length = 16)
+    private ThumbnailStatus thumbStatus;
+
+    //StoredBlob 의 hash. null 이면 앨범 디렉토리에 직접 저장된 예전 사진이다
+    @Column(name = "content_hash", unique = false, nullable = true, length = 64)
+    private String contentHash;
+
     public Photo(){};
 
     public Long getPhotoId() {
@@ -84,6 +101,22 @@ public class Photo {
         this.uploadedAt = uploadedAt;
     }
 
+    public ThumbnailStatus getThumbStatus() {
+        return thumbStatus;
+    }
+
+    public void setThumbStatus(ThumbnailStatus thumbStatus) {
+        this.thumbStatus = thumbStatus;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public Album getAlbum() {
         return album;
     }
@@ -0,0 +1,80 @@
+package com.squarecross.photoalbum.domain;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.util.Date;
+
+//내용(SHA-256)으로 저장한 원본 파일. 같은 파일을 여러 번 올리면 파일은 하나만 두고 참조 수만 늘린다
+@Entity
+@Table(name = "stored_blob", schema = "photo_album",
+        indexes = {@Index(name = "idx_stored_blob_ref_count", columnList = "ref_count")})
+public class StoredBlob {
+
+    @Id
+    @Column(name = "hash", unique = true, nullable = false, length = 64)
+    private String hash;
+
+    @Column(name = "size", unique = false, nullable = false)
+    private long size;
+
+    //이 파일을 가리키는 사진 수. 0 이 되면 BlobStore 가 파일과 함께 지운다
+    @Column(name = "ref_count", unique = false, nullable = false)
+    private long refCount;
+
+    @Column(name = "created_at", unique = false, nullable = true)
+    @CreationTimestamp
+    private Date createdAt;
+
+    //마지막으로 이 내용이 업로드된 시각. 참조가 없어도 이 시각부터 유예 시간 동안은 지우지 않는다
+    @Column(name = "touched_at", unique = false, nullable = true)
+    private Date touchedAt;
+
+    public StoredBlob(){};
+
+    public StoredBlob(String hash, long size, long refCount) {
+        this.hash = hash;
+        this.size = size;
+        this.refCount = refCount;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getTouchedAt() {
+        return touchedAt;
+    }
+
+    public void setTouchedAt(Date touchedAt) {
+        this.touchedAt = touchedAt;
+    }
+}
@@ -0,0 +1,12 @@
+package com.squarecross.photoalbum.domain;
+
+public enum ThumbnailStatus {
+    PENDING, //원본만 저장되고 썸네일 생성 대기 중
+    READY,
+    FAILED;
+
+    //상태 컬럼이 추가되기 전에 저장된 사진(null)은 썸네일이 이미 만들어져 있다
+    public static boolean isReady(ThumbnailStatus status) {
+        return status == null || status == READY;
+    }
+}
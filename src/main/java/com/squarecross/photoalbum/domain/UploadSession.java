@@ -0,0 +1,129 @@
+package com.squarecross.photoalbum.domain;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.util.Date;
+
+//이어받기 업로드. 받은 청크는 received_chunks 비트맵에 표시하고, 내용은 uploads/{uploadId}.part 파일의 청크 위치에 바로 쓴다.
+//행과 파일이 남아 있으므로 서버가 재시작해도 빠진 청크만 다시 받으면 된다
+@Entity
+@Table(name = "upload_session", schema = "photo_album",
+        indexes = {@Index(name = "idx_upload_session_expires_at", columnList = "expires_at")})
+public class UploadSession {
+
+    @Id
+    @Column(name = "upload_id", unique = true, nullable = false, length = 36)
+    private String uploadId;
+
+    @Column(name = "album_id", unique = false, nullable = false)
+    private Long albumId;
+
+    @Column(name = "file_name", unique = false, nullable = false)
+    private String fileName;
+
+    @Column(name = "total_size", unique = false, nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", unique = false, nullable = false)
+    private int chunkSize;
+
+    //클라이언트가 알려준 파일 전체의 SHA-256. 완료할 때 받은 파일과 비교한다
+    @Column(name = "sha256", unique = false, nullable = false, length = 64)
+    private String sha256;
+
+    //청크 번호 i 를 받았으면 i 번째 비트가 1
+    @Column(name = "received_chunks", unique = false, nullable = false, length = 1024)
+    private byte[] receivedChunks;
+
+    @Column(name = "created_at", unique = false, nullable = true)
+    @CreationTimestamp
+    private Date createdAt;
+
+    //마지막으로 청크를 받은 뒤 이 시간이 지나면 파일과 함께 지운다
+    @Column(name = "expires_at", unique = false, nullable = false)
+    private Date expiresAt;
+
+    public UploadSession(){};
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public Long getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public byte[] getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(byte[] receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public int getChunkCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    //마지막 청크는 chunkSize 보다 짧을 수 있다
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, totalSize - (long) index * chunkSize);
+    }
+}
@@ -8,6 +8,7 @@ public class AlbumDto {
     String albumName;
     Date createdAt;
     int count;
+    Long totalBytes;
 
     private List<String> thumbUrls;
 
@@ -43,6 +44,14 @@ public class AlbumDto {
         this.count = count;
     }
 
+    public Long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(Long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
     public List<String> getThumbUrls() { return thumbUrls; }
 
     public void setThumbUrls(List<String> thumbUrls) { this.thumbUrls = thumbUrls; }
@@ -0,0 +1,98 @@
+package com.squarecross.photoalbum.dto;
+
+import com.squarecross.photoalbum.domain.ExportStatus;
+
+import java.util.Date;
+
+public class ExportJobDto {
+    private Long exportId;
+    private Long albumId;
+    private ExportStatus status;
+    private int totalCount;
+    private int processedCount;
+    private Long artifactSize;
+    private String errorMessage;
+    private Date createdAt;
+    private Date completedAt;
+    private Date expiresAt;
+
+    public Long getExportId() {
+        return exportId;
+    }
+
+    public void setExportId(Long exportId) {
+        this.exportId = exportId;
+    }
+
+    public Long getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public ExportStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExportStatus status) {
+        this.status = status;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public void setProcessedCount(int processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    public Long getArtifactSize() {
+        return artifactSize;
+    }
+
+    public void setArtifactSize(Long artifactSize) {
+        this.artifactSize = artifactSize;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Date completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -1,5 +1,7 @@
 package com.squarecross.photoalbum.dto;
 
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+
 import java.util.Date;
 
 public class PhotoDto {
@@ -11,6 +13,23 @@ public class PhotoDto {
     private String thumbUrl;
     private Date uploadedAt;
     private Long albumId;
+    private ThumbnailStatus thumbStatus;
+
+    public PhotoDto(){};
+
+    //JPQL 생성자 표현식(select new ...)으로 엔티티를 만들지 않고 바로 조회할 때 쓴다.
+    //썸네일이 아직 만들어지지 않았으면 원본 URL 로 대신 내려준다
+    public PhotoDto(Long photoId, String fileName, int fileSize, String originalUrl, String thumbUrl,
+                    Date uploadedAt, Long albumId, ThumbnailStatus thumbStatus) {
+        this.photoId = photoId;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.originalUrl = originalUrl;
+        this.thumbUrl = ThumbnailStatus.isReady(thumbStatus) ? thumbUrl : originalUrl;
+        this.uploadedAt = uploadedAt;
+        this.albumId = albumId;
+        this.thumbStatus = thumbStatus;
+    }
 
     public Long getPhotoId() {
         return photoId;
@@ -67,4 +86,12 @@ public class PhotoDto {
     public void setAlbumId(Long albumId) {
         this.albumId = albumId;
     }
+
+    public ThumbnailStatus getThumbStatus() {
+        return thumbStatus;
+    }
+
+    public void setThumbStatus(ThumbnailStatus thumbStatus) {
+        this.thumbStatus = thumbStatus;
+    }
 }
@@ -0,0 +1,37 @@
+package com.squarecross.photoalbum.dto;
+
+import java.nio.file.Path;
+
+//다운로드할 때 필요한 파일 위치와 내려줄 파일명.
+//사진 원본, 썸네일은 PhotoStorage 의 key 로, rendition 이나 내보내기 결과처럼 로컬에만 있는 파일은 path 로 가리킨다
+public class PhotoFile {
+    private final String fileName;
+    private final String key;
+    private final Path path;
+
+    public PhotoFile(String fileName, String key) {
+        this.fileName = fileName;
+        this.key = key;
+        this.path = null;
+    }
+
+    public PhotoFile(String fileName, Path path) {
+        this.fileName = fileName;
+        this.key = null;
+        this.path = path;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    //PhotoStorage 에 있는 파일이 아니면 null
+    public String getKey() {
+        return key;
+    }
+
+    //로컬 파일이 아니면 null
+    public Path getPath() {
+        return path;
+    }
+}
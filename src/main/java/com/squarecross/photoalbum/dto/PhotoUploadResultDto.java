@@ -0,0 +1,50 @@
+package com.squarecross.photoalbum.dto;
+
+//여러 파일을 한 번에 올릴 때 파일 하나의 결과. 저장되면 photo, 실패하면 error 가 채워진다
+public class PhotoUploadResultDto {
+    private String fileName; //요청에 담긴 원래 파일명
+    private PhotoDto photo;
+    private String error;
+
+    public static PhotoUploadResultDto stored(String fileName, PhotoDto photo) {
+        PhotoUploadResultDto result = new PhotoUploadResultDto();
+        result.setFileName(fileName);
+        result.setPhoto(photo);
+        return result;
+    }
+
+    public static PhotoUploadResultDto failed(String fileName, String error) {
+        PhotoUploadResultDto result = new PhotoUploadResultDto();
+        result.setFileName(fileName);
+        result.setError(error);
+        return result;
+    }
+
+    public boolean isStored() {
+        return photo != null;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public PhotoDto getPhoto() {
+        return photo;
+    }
+
+    public void setPhoto(PhotoDto photo) {
+        this.photo = photo;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,180 @@
+package com.squarecross.photoalbum.export;
+
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.service.FileNames;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import com.squarecross.photoalbum.storage.StorageObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+//여러 사진을 zip 으로 묶어서 바로 스트림에 쓴다.
+//다음 readAhead 개 파일은 zipExecutor 에서 미리 읽어두고, 이미 압축된 이미지 형식은 다시 압축하지 않는다.
+//메모리에 읽어둔 작은 파일은 STORED 로, 큰 파일은 CRC 를 미리 알 수 없으므로 압축 레벨 0 의 DEFLATED 로 넣어서 한 번만 읽는다
+@Component
+public class ZipExporter {
+
+    private static final Set<String> STORED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp", "heic", "heif", "avif");
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    @Qualifier("zipExecutor")
+    private ExecutorService zipExecutor;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Value("${photoalbum.zip.read-ahead:4}")
+    private int readAhead;
+
+    //이 크기 이하의 파일은 미리 메모리에 읽어둔다. 메모리 사용량은 readAhead * bufferLimit 를 넘지 않는다
+    @Value("${photoalbum.zip.buffer-limit:4194304}")
+    private int bufferLimit;
+
+    public void export(List<PhotoFile> files, OutputStream out) throws IOException {
+        export(files, out, written -> {});
+    }
+
+    //onEntryWritten 은 엔트리를 하나 쓸 때마다 지금까지 쓴 엔트리 수를 받는다
+    public void export(List<PhotoFile> files, OutputStream out, IntConsumer onEntryWritten) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE));
+        Deque<Future<PreparedEntry>> window = new ArrayDeque<>();
+        Set<String> entryNames = new HashSet<>();
+        int next = 0;
+        try {
+            while (next < files.size() && window.size() < readAhead) {
+                PhotoFile file = files.get(next++);
+                window.add(zipExecutor.submit(() -> prepare(file)));
+            }
+            while (!window.isEmpty()) {
+                PreparedEntry entry = await(window.poll());
+                if(next < files.size()) {
+                    PhotoFile file = files.get(next++);
+                    window.add(zipExecutor.submit(() -> prepare(file)));
+                }
+                //같은 이름의 파일이 여러 개면 "파일명 (2).확장자" 로 바꿔서 넣는다
+                String entryName = FileNames.nextFileName(entry.file.getFileName(), entryNames);
+                entryNames.add(entryName);
+                writeEntry(zipOut, entryName, entry);
+                onEntryWritten.accept(entryNames.size());
+            }
+            zipOut.finish();
+            zipOut.flush();
+        } finally {
+            for(Future<PreparedEntry> pending : window) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    private PreparedEntry prepare(PhotoFile file) throws IOException {
+        long size;
+        long lastModified;
+        if(file.getKey() != null) {
+            StorageObject object = photoStorage.stat(file.getKey());
+            size = object.getSize();
+            lastModified = object.getLastModified();
+        } else {
+            size = Files.size(file.getPath());
+            lastModified = Files.getLastModifiedTime(file.getPath()).toMillis();
+        }
+        String ext = StringUtils.getFilenameExtension(file.getFileName());
+        boolean stored = ext != null && STORED_EXTENSIONS.contains(ext.toLowerCase(Locale.ROOT));
+
+        byte[] data = null;
+        long crc = -1;
+        if(size <= bufferLimit) {
+            try (InputStream in = open(file)) {
+                data = in.readAllBytes();
+            }
+            size = data.length;
+            if(stored) {
+                CRC32 crc32 = new CRC32();
+                crc32.update(data);
+                crc = crc32.getValue();
+            }
+        }
+        return new PreparedEntry(file, size, lastModified, stored, crc, data);
+    }
+
+    private void writeEntry(ZipOutputStream zipOut, String entryName, PreparedEntry entry) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entryName);
+        zipEntry.setTime(entry.lastModified);
+        if(entry.stored && entry.data != null) {
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(entry.size);
+            zipEntry.setCompressedSize(entry.size);
+            zipEntry.setCrc(entry.crc);
+        } else {
+            //레벨 0 은 압축 없이 블록만 나눠 담고, CRC 와 크기는 쓰면서 계산해서 엔트리 뒤(data descriptor)에 기록된다
+            zipOut.setLevel(entry.stored ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        }
+        zipOut.putNextEntry(zipEntry);
+        if(entry.data != null) {
+            zipOut.write(entry.data);
+        } else {
+            try (InputStream in = open(entry.file)) {
+                in.transferTo(zipOut);
+            }
+        }
+        zipOut.closeEntry();
+    }
+
+    private InputStream open(PhotoFile file) throws IOException {
+        return file.getKey() != null ? photoStorage.open(file.getKey()) : Files.newInputStream(file.getPath());
+    }
+
+    private static PreparedEntry await(Future<PreparedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("zip 생성이 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static class PreparedEntry {
+        private final PhotoFile file;
+        private final long size;
+        private final long lastModified;
+        private final boolean stored;
+        private final long crc;
+        private final byte[] data;
+
+        private PreparedEntry(PhotoFile file, long size, long lastModified, boolean stored, long crc, byte[] data) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stored = stored;
+            this.crc = crc;
+            this.data = data;
+        }
+    }
+}
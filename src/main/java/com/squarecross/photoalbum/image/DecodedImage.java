@@ -0,0 +1,46 @@
+package com.squarecross.photoalbum.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+public class DecodedImage {
+    private final BufferedImage image;
+    private final String formatName;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int subsampling;
+
+    public DecodedImage(BufferedImage image, String formatName, int sourceWidth, int sourceHeight, int subsampling) {
+        this.image = image;
+        this.formatName = formatName;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.subsampling = subsampling;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    //디코딩 결과 raster 가 차지하는 바이트 수. 디코딩 중 가장 큰 메모리 사용량이 이 버퍼다
+    public long getDecodedBytes() {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,108 @@
+package com.squarecross.photoalbum.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.IntBinaryOperator;
+
+public class ImageDecoder {
+
+    private ImageDecoder() {}
+
+    //원본 크기를 먼저 읽고, 긴 변이 targetSize 의 2배 이상 남는 만큼만 subsampling 해서 디코딩한다.
+    //40MP 사진도 썸네일용으로는 수백 px 크기로만 메모리에 올라온다
+    public static DecodedImage decode(Path path, int targetSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            return decode(input, targetSize);
+        }
+    }
+
+    //저장소에서 연 스트림. 닫는 것은 호출한 쪽에서 한다
+    public static DecodedImage decode(InputStream in, int targetSize) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            return decode(input, targetSize);
+        }
+    }
+
+    public static DecodedImage decode(ImageInputStream input, int targetSize) throws IOException {
+        return decode(input, (width, height) -> targetSize);
+    }
+
+    //targetWidth x targetHeight 상자에 맞출 때(cover 면 상자를 덮을 때) 결과의 긴 변 길이를 기준으로 subsampling 한다.
+    //0 인 변은 제한이 없다는 뜻
+    public static DecodedImage decode(Path path, int targetWidth, int targetHeight, boolean cover) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            return decode(input, (width, height) -> targetSizeFor(width, height, targetWidth, targetHeight, cover));
+        }
+    }
+
+    public static DecodedImage decode(InputStream in, int targetWidth, int targetHeight, boolean cover) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            return decode(input, (width, height) -> targetSizeFor(width, height, targetWidth, targetHeight, cover));
+        }
+    }
+
+    private static DecodedImage decode(ImageInputStream input, IntBinaryOperator targetSizeFor) throws IOException {
+        if(input == null) {
+            throw new IOException("이미지를 읽을 수 없습니다.");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext()) {
+            throw new IOException("지원하지 않는 이미지 형식입니다.");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int subsampling = subsamplingFor(width, height, targetSizeFor.applyAsInt(width, height));
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            if(subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return new DecodedImage(reader.read(0, param), reader.getFormatName(), width, height, subsampling);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    public static DecodedImage decode(File file, int targetSize) throws IOException {
+        return decode(file.toPath(), targetSize);
+    }
+
+    //상자에 맞춘 결과 이미지의 긴 변 길이. 원본보다 커지지는 않는다
+    public static int targetSizeFor(int width, int height, int targetWidth, int targetHeight, boolean cover) {
+        double scale = scaleFor(width, height, targetWidth, targetHeight, cover);
+        return (int) Math.ceil(Math.max(width, height) * scale);
+    }
+
+    public static double scaleFor(int width, int height, int targetWidth, int targetHeight, boolean cover) {
+        double scaleX = targetWidth > 0 ? (double) targetWidth / width : Double.NaN;
+        double scaleY = targetHeight > 0 ? (double) targetHeight / height : Double.NaN;
+        double scale;
+        if(Double.isNaN(scaleX)) {
+            scale = scaleY;
+        } else if(Double.isNaN(scaleY)) {
+            scale = scaleX;
+        } else {
+            scale = cover ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        }
+        return Double.isNaN(scale) ? 1.0 : Math.min(1.0, scale);
+    }
+
+    //마지막 축소 단계에서 필터링할 여유를 남기기 위해 targetSize 의 2배까지만 줄인다
+    static int subsamplingFor(int width, int height, int targetSize) {
+        if(targetSize <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.max(width, height) / (targetSize * 2));
+    }
+}
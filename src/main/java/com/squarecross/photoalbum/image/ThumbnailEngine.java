@@ -0,0 +1,170 @@
+package com.squarecross.photoalbum.image;
+
+import org.imgscalr.Scalr;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//썸네일 리사이즈 엔진.
+//PROGRESSIVE 는 목표의 2배 이상 남은 동안 2x2 평균(box)으로 반씩 줄이고, 마지막 한 번만 bicubic 으로 보간한다.
+//LEGACY 는 기존처럼 Scalr.resize 기본 설정을 쓴다. 모드별 처리 수와 CPU 시간을 모아 코어당 처리량을 비교할 수 있다
+@Component
+public class ThumbnailEngine {
+
+    public enum Mode { LEGACY, PROGRESSIVE }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Mode mode;
+    private final Map<Mode, LongAdder> counts = new EnumMap<>(Mode.class);
+    private final Map<Mode, LongAdder> cpuNanos = new EnumMap<>(Mode.class);
+
+    @Autowired
+    public ThumbnailEngine(@Value("${photoalbum.thumbnail.engine:progressive}") String mode) {
+        this(Mode.valueOf(mode.toUpperCase(Locale.ROOT)));
+    }
+
+    public ThumbnailEngine(Mode mode) {
+        this.mode = mode;
+        for(Mode m : Mode.values()) {
+            counts.put(m, new LongAdder());
+            cpuNanos.put(m, new LongAdder());
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    //긴 변이 targetSize 가 되도록 비율을 유지해서 줄인다
+    public BufferedImage resize(BufferedImage source, int targetSize) {
+        return resize(source, targetSize, mode);
+    }
+
+    public BufferedImage resize(BufferedImage source, int targetSize, Mode mode) {
+        long startedAt = cpuTime();
+        BufferedImage result = mode == Mode.LEGACY
+                ? Scalr.resize(source, targetSize, targetSize)
+                : progressive(source, targetSize);
+        cpuNanos.get(mode).add(cpuTime() - startedAt);
+        counts.get(mode).increment();
+        return result;
+    }
+
+    public long getCount(Mode mode) {
+        return counts.get(mode).sum();
+    }
+
+    //CPU 1초(코어 하나)당 만든 썸네일 수
+    public double getThroughputPerCore(Mode mode) {
+        long nanos = cpuNanos.get(mode).sum();
+        return nanos == 0 ? 0.0 : counts.get(mode).sum() * 1_000_000_000.0 / nanos;
+    }
+
+    private BufferedImage progressive(BufferedImage source, int targetSize) {
+        BufferedImage image = normalize(source);
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if(longest <= targetSize) {
+            return image;
+        }
+        while (longest / 2 >= targetSize) {
+            image = halve(image);
+            longest = Math.max(image.getWidth(), image.getHeight());
+        }
+        double scale = (double) targetSize / longest;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        return scale(image, width, height);
+    }
+
+    //Java2D 의 빠른 루프를 타도록 TYPE_INT_RGB / TYPE_INT_ARGB 로 맞춘다
+    static BufferedImage normalize(BufferedImage source) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if(source.getType() == type && source.getRaster().getDataBuffer() instanceof DataBufferInt
+                && source.getRaster().getParent() == null) {
+            return source;
+        }
+        BufferedImage normalized = new BufferedImage(source.getWidth(), source.getHeight(), type);
+        Graphics2D graphics = normalized.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return normalized;
+    }
+
+    //2x2 픽셀 평균으로 가로, 세로를 반씩 줄인다. 홀수 변의 마지막 줄은 버린다.
+    //알파가 있으면 투명한 픽셀의 색이 번지지 않도록 색을 알파로 가중해서 평균한다(premultiplied 평균)
+    static BufferedImage halve(BufferedImage source) {
+        int width = source.getWidth();
+        int dstWidth = Math.max(1, width / 2);
+        int dstHeight = Math.max(1, source.getHeight() / 2);
+        int[] src = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+        BufferedImage target = new BufferedImage(dstWidth, dstHeight, source.getType());
+        int[] dst = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+
+        boolean alpha = source.getType() == BufferedImage.TYPE_INT_ARGB;
+        int dx = width > 1 ? 1 : 0;
+        int dy = source.getHeight() > 1 ? width : 0;
+        for(int y = 0; y < dstHeight; y++) {
+            int row = y * 2 * width;
+            for(int x = 0; x < dstWidth; x++) {
+                int i = row + x * 2;
+                int p0 = src[i], p1 = src[i + dx], p2 = src[i + dy], p3 = src[i + dy + dx];
+                dst[y * dstWidth + x] = alpha ? averagePremultiplied(p0, p1, p2, p3) : average(p0, p1, p2, p3);
+            }
+        }
+        return target;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        int r = (((p0 >> 16) & 0xff) + ((p1 >> 16) & 0xff) + ((p2 >> 16) & 0xff) + ((p3 >> 16) & 0xff) + 2) >> 2;
+        int g = (((p0 >> 8) & 0xff) + ((p1 >> 8) & 0xff) + ((p2 >> 8) & 0xff) + ((p3 >> 8) & 0xff) + 2) >> 2;
+        int b = ((p0 & 0xff) + (p1 & 0xff) + (p2 & 0xff) + (p3 & 0xff) + 2) >> 2;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    //(색 * 알파) 의 평균을 알파 평균으로 나누는 것과 같다. 네 픽셀이 모두 투명하면 투명한 검정
+    private static int averagePremultiplied(int p0, int p1, int p2, int p3) {
+        int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+        int alphaSum = a0 + a1 + a2 + a3;
+        if(alphaSum == 0) {
+            return 0;
+        }
+        int half = alphaSum >> 1;
+        int r = (((p0 >> 16) & 0xff) * a0 + ((p1 >> 16) & 0xff) * a1 + ((p2 >> 16) & 0xff) * a2 + ((p3 >> 16) & 0xff) * a3 + half) / alphaSum;
+        int g = (((p0 >> 8) & 0xff) * a0 + ((p1 >> 8) & 0xff) * a1 + ((p2 >> 8) & 0xff) * a2 + ((p3 >> 8) & 0xff) * a3 + half) / alphaSum;
+        int b = ((p0 & 0xff) * a0 + (p1 & 0xff) * a1 + (p2 & 0xff) * a2 + (p3 & 0xff) * a3 + half) / alphaSum;
+        int a = (alphaSum + 2) >> 2;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, source.getType());
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,21 @@
+package com.squarecross.photoalbum.mapper;
+
+import com.squarecross.photoalbum.domain.ExportJob;
+import com.squarecross.photoalbum.dto.ExportJobDto;
+
+public class ExportJobMapper {
+    public static ExportJobDto convertToDto(ExportJob exportJob) {
+        ExportJobDto exportJobDto = new ExportJobDto();
+        exportJobDto.setExportId(exportJob.getExportId());
+        exportJobDto.setAlbumId(exportJob.getAlbumId());
+        exportJobDto.setStatus(exportJob.getStatus());
+        exportJobDto.setTotalCount(exportJob.getTotalCount());
+        exportJobDto.setProcessedCount(exportJob.getProcessedCount());
+        exportJobDto.setArtifactSize(exportJob.getArtifactSize());
+        exportJobDto.setErrorMessage(exportJob.getErrorMessage());
+        exportJobDto.setCreatedAt(exportJob.getCreatedAt());
+        exportJobDto.setCompletedAt(exportJob.getCompletedAt());
+        exportJobDto.setExpiresAt(exportJob.getExpiresAt());
+        return exportJobDto;
+    }
+}
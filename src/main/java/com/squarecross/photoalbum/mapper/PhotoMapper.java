@@ -8,15 +8,8 @@ import java.util.stream.Collectors;
 
 public class PhotoMapper {
     public static PhotoDto convertToDto(Photo photo) {
-        PhotoDto photoDto = new PhotoDto();
-        photoDto.setAlbumId(photo.getAlbum().getAlbumId());
-        photoDto.setPhotoId(photo.getPhotoId());
-        photoDto.setFileName(photo.getFileName());
-        photoDto.setThumbUrl(photo.getThumbUrl());
-        photoDto.setOriginalUrl(photo.getOriginalUrl());
-        photoDto.setFileSize(photo.getFileSize());
-        photoDto.setUploadedAt(photo.getUploadedAt());
-        return photoDto;
+        return new PhotoDto(photo.getPhotoId(), photo.getFileName(), photo.getFileSize(), photo.getOriginalUrl(),
+                photo.getThumbUrl(), photo.getUploadedAt(), photo.getAlbum().getAlbumId(), photo.getThumbStatus());
     }
 
     public static Photo convertToModel(PhotoDto photoDto) {
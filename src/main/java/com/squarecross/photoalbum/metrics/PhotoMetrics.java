@@ -0,0 +1,66 @@
+package com.squarecross.photoalbum.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//디스크 단계별 시간(photoalbum.disk{phase})과 업로드/다운로드 바이트(photoalbum.bytes{direction,kind})를 기록한다
+@Component
+public class PhotoMetrics {
+
+    public static final String COPY = "copy";
+    public static final String DECODE = "decode";
+    public static final String RESIZE = "resize";
+    public static final String ENCODE = "encode";
+    public static final String MOVE = "move";
+    public static final String DELETE = "delete";
+    public static final String HASH = "hash";
+
+    private final MeterRegistry meterRegistry;
+
+    public PhotoMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T timeDisk(String phase, IoCallable<T> work) throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            recordDisk(phase, System.nanoTime() - startedAt);
+        }
+    }
+
+    public void recordDisk(String phase, long nanos) {
+        Timer.builder("photoalbum.disk")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bytesIn(String kind, long bytes) {
+        bytes("in", kind).increment(bytes);
+    }
+
+    public void bytesOut(String kind, long bytes) {
+        bytes("out", kind).increment(bytes);
+    }
+
+    private Counter bytes(String direction, String kind) {
+        return Counter.builder("photoalbum.bytes")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface IoCallable<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,23 @@
+package com.squarecross.photoalbum.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//Hibernate 가 실행하는 SQL 수를 스레드별로 센다. RequestMetricsFilter 가 요청마다 초기화하고 읽는다
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long count() {
+        return COUNT.get()[0];
+    }
+}
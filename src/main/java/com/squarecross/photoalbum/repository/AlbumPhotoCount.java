@@ -0,0 +1,9 @@
+package com.squarecross.photoalbum.repository;
+
+public interface AlbumPhotoCount {
+    Long getAlbumId();
+
+    Long getPhotoCount();
+
+    Long getTotalBytes();
+}
@@ -0,0 +1,22 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.AlbumReclaimTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface AlbumReclaimTaskRepository extends JpaRepository<AlbumReclaimTask, Long> {
+
+    List<AlbumReclaimTask> findAllByOrderByTaskIdAsc();
+
+    @Transactional
+    @Modifying
+    @Query("update AlbumReclaimTask t set t.deletedFiles = t.deletedFiles + :count where t.taskId = :taskId")
+    int addDeletedFiles(@Param("taskId") Long taskId, @Param("count") long count);
+}
@@ -1,19 +1,111 @@
 package com.squarecross.photoalbum.repository;
 
 import com.squarecross.photoalbum.domain.Album;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AlbumRepository extends JpaRepository<Album, Long> {
 
-    Optional<Album> findByAlbumNameContainingIgnoreCase (String searchKeyword);
+    //Album.photos cascade 로 사진을 한 장씩 지우지 않도록 앨범 행만 지운다. 사진은 먼저 bulk 로 지워야 한다
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Album a where a.albumId = :albumId")
+    int deleteByIdInBulk(@Param("albumId") Long albumId);
+
+    //사진 수와 크기를 행 단위로 더한다. 아직 집계되지 않은 앨범(null)은 그대로 둔다
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Album a set a.photoCount = a.photoCount + :count, a.totalBytes = a.totalBytes + :bytes " +
+            "where a.albumId = :albumId and a.photoCount is not null")
+    int addPhotoStats(@Param("albumId") Long albumId, @Param("count") int count, @Param("bytes") long bytes);
+
+    //최신 사진 4장의 썸네일(썸네일이 준비되지 않았으면 원본)을 한 문장으로 다시 계산한다
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update album set cover_thumb_urls = (" +
+            "select coalesce(group_concat(t.thumb_url order by t.uploaded_at desc, t.photo_id desc separator '\n'), '') from (" +
+            "select case when p.thumb_status is null or p.thumb_status = 'READY' then p.thumb_url else p.original_url end as thumb_url, " +
+            "p.uploaded_at, p.photo_id from photo p where p.album_id = :albumId " +
+            "order by p.uploaded_at desc, p.photo_id desc limit 4) t) " +
+            "where album_id = :albumId and photo_count is not null", nativeQuery = true)
+    int refreshCoverThumbUrls(@Param("albumId") Long albumId);
+
+    //사진 테이블에서 사진 수, 크기, 표지를 모두 다시 계산한다. 집계되지 않은 앨범을 채우거나 틀어진 값을 고칠 때 쓴다
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update album set " +
+            "photo_count = (select count(*) from photo p where p.album_id = :albumId), " +
+            "total_bytes = (select coalesce(sum(p.file_size), 0) from photo p where p.album_id = :albumId), " +
+            "cover_thumb_urls = (" +
+            "select coalesce(group_concat(t.thumb_url order by t.uploaded_at desc, t.photo_id desc separator '\n'), '') from (" +
+            "select case when p.thumb_status is null or p.thumb_status = 'READY' then p.thumb_url else p.original_url end as thumb_url, " +
+            "p.uploaded_at, p.photo_id from photo p where p.album_id = :albumId " +
+            "order by p.uploaded_at desc, p.photo_id desc limit 4) t) " +
+            "where album_id = :albumId", nativeQuery = true)
+    int refreshPhotoStats(@Param("albumId") Long albumId);
+
+    List<Album> findByAlbumIdGreaterThanOrderByAlbumIdAsc(Long albumId, Pageable pageable);
+
+    //검색 색인을 다시 만들 때 albumId 순으로 나눠서 읽는다
+    @Query("select a.albumId as id, a.albumName as name from Album a where a.albumId > :afterId order by a.albumId")
+    List<SearchEntry> findSearchEntries(@Param("afterId") Long afterId, Pageable pageable);
 
     List<Album> findByAlbumNameContainingOrderByCreatedAtDesc(String keyword);
     List<Album> findByAlbumNameContainingOrderByCreatedAtAsc(String keyword);
     List<Album> findByAlbumNameContainingOrderByAlbumNameDesc(String keyword);
     List<Album> findByAlbumNameContainingOrderByAlbumNameAsc(String keyword);
+
+    List<Album> findByAlbumNameContaining(String keyword, Pageable pageable);
+
+    //조회 API 는 엔티티 대신 필요한 컬럼만 AlbumSummary 로 읽는다
+    String ALBUM_SUMMARY = "select a.albumId as albumId, a.albumName as albumName, a.createdAt as createdAt, " +
+            "a.photoCount as photoCount, a.totalBytes as totalBytes, a.coverThumbUrls as coverThumbUrls from Album a ";
+
+    @Query(ALBUM_SUMMARY + "where a.albumId = :albumId")
+    Optional<AlbumSummary> findSummaryById(@Param("albumId") Long albumId);
+
+    @Query(ALBUM_SUMMARY + "where a.albumId in :albumIds")
+    List<AlbumSummary> findSummariesByIds(@Param("albumIds") Collection<Long> albumIds);
+
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%')")
+    List<AlbumSummary> findSummaries(@Param("keyword") String keyword, Sort sort);
+
+    //Keyset 페이지네이션. 첫 페이지는 Pageable 의 Sort 로, 이후 페이지는 커서(정렬 값, albumId) 이후부터 조회
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%')")
+    List<AlbumSummary> findSummaries(@Param("keyword") String keyword, Pageable pageable);
+
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%') " +
+            "and (a.createdAt < :createdAt or (a.createdAt = :createdAt and a.albumId < :albumId)) " +
+            "order by a.createdAt desc, a.albumId desc")
+    List<AlbumSummary> findPageByCreatedAtDesc(@Param("keyword") String keyword, @Param("createdAt") Date createdAt,
+                                               @Param("albumId") Long albumId, Pageable pageable);
+
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%') " +
+            "and (a.createdAt > :createdAt or (a.createdAt = :createdAt and a.albumId > :albumId)) " +
+            "order by a.createdAt asc, a.albumId asc")
+    List<AlbumSummary> findPageByCreatedAtAsc(@Param("keyword") String keyword, @Param("createdAt") Date createdAt,
+                                              @Param("albumId") Long albumId, Pageable pageable);
+
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%') " +
+            "and (a.albumName < :albumName or (a.albumName = :albumName and a.albumId < :albumId)) " +
+            "order by a.albumName desc, a.albumId desc")
+    List<AlbumSummary> findPageByAlbumNameDesc(@Param("keyword") String keyword, @Param("albumName") String albumName,
+                                               @Param("albumId") Long albumId, Pageable pageable);
+
+    @Query(ALBUM_SUMMARY + "where a.albumName like concat('%', :keyword, '%') " +
+            "and (a.albumName > :albumName or (a.albumName = :albumName and a.albumId > :albumId)) " +
+            "order by a.albumName asc, a.albumId asc")
+    List<AlbumSummary> findPageByAlbumNameAsc(@Param("keyword") String keyword, @Param("albumName") String albumName,
+                                              @Param("albumId") Long albumId, Pageable pageable);
 }
@@ -0,0 +1,19 @@
+package com.squarecross.photoalbum.repository;
+
+import java.util.Date;
+
+//앨범 조회 API 가 쓰는 컬럼만 읽는 projection. 엔티티를 영속성 컨텍스트에 올리지 않는다
+public interface AlbumSummary {
+    Long getAlbumId();
+
+    String getAlbumName();
+
+    Date getCreatedAt();
+
+    //아직 집계되지 않은 앨범이면 null
+    Integer getPhotoCount();
+
+    Long getTotalBytes();
+
+    String getCoverThumbUrls();
+}
@@ -0,0 +1,7 @@
+package com.squarecross.photoalbum.repository;
+
+public interface AlbumThumbUrl {
+    Long getAlbumId();
+
+    String getThumbUrl();
+}
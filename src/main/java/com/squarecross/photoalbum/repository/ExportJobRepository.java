@@ -0,0 +1,31 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.ExportJob;
+import com.squarecross.photoalbum.domain.ExportStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ExportJobRepository extends JpaRepository<ExportJob, Long> {
+
+    Optional<ExportJob> findFirstByAlbumIdAndFingerprintAndStatusInOrderByExportIdDesc(Long albumId, String fingerprint,
+                                                                                       Collection<ExportStatus> statuses);
+
+    List<ExportJob> findByStatusIn(Collection<ExportStatus> statuses);
+
+    List<ExportJob> findByStatusAndExpiresAtBefore(ExportStatus status, Date now);
+
+    @Transactional
+    @Modifying
+    @Query("update ExportJob e set e.processedCount = :processedCount where e.exportId = :exportId")
+    int updateProcessedCount(@Param("exportId") Long exportId, @Param("processedCount") int processedCount);
+}
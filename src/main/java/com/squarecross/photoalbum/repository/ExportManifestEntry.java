@@ -0,0 +1,11 @@
+package com.squarecross.photoalbum.repository;
+
+public interface ExportManifestEntry {
+    Long getPhotoId();
+
+    String getFileName();
+
+    String getOriginalUrl();
+
+    int getFileSize();
+}
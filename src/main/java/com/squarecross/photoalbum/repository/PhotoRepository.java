@@ -1,9 +1,20 @@
 package com.squarecross.photoalbum.repository;
 
+import com.squarecross.photoalbum.domain.Album;
 import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,13 +24,104 @@ public interface PhotoRepository extends JpaRepository<Photo, Long> {
 
     List<Photo> findTop4ByAlbum_AlbumIdOrderByUploadedAtDesc(Long AlbumId);
 
+    //앨범 목록 조회 시 앨범마다 count 쿼리를 날리지 않도록 한 번에 집계
+    @Query("select p.album.albumId as albumId, count(p) as photoCount, sum(p.fileSize) as totalBytes from Photo p " +
+            "where p.album.albumId in :albumIds group by p.album.albumId")
+    List<AlbumPhotoCount> countByAlbumIds(@Param("albumIds") Collection<Long> albumIds);
+
+    //앨범별 최신 사진 4장의 썸네일을 window function 으로 한 번에 조회
+    @Query(value = "select t.album_id as albumId, t.thumb_url as thumbUrl from (" +
+            "select p.album_id, " +
+            "case when p.thumb_status is null or p.thumb_status = 'READY' then p.thumb_url else p.original_url end as thumb_url, " +
+            "row_number() over (partition by p.album_id order by p.uploaded_at desc, p.photo_id desc) as rn " +
+            "from photo p where p.album_id in (:albumIds)) t " +
+            "where t.rn <= 4 order by t.album_id, t.rn", nativeQuery = true)
+    List<AlbumThumbUrl> findTop4ThumbUrlsByAlbumIds(@Param("albumIds") Collection<Long> albumIds);
+
     Optional<Photo> findByFileNameAndAlbum_AlbumId(String photoName, Long AlbumId);
 
-    List<Photo> findAllByAlbum_AlbumIdOrderByFileNameDesc(Long AlbumId);
+    //파일명 자신과 "파일명 (k).확장자" 변형들을 한 번에 조회. pattern 은 FileNames.variantPattern 으로 만든다
+    @Query("select p.fileName from Photo p where p.album.albumId = :albumId " +
+            "and (p.fileName = :fileName or p.fileName like :pattern escape '!')")
+    List<String> findFileNameVariants(@Param("albumId") Long albumId, @Param("fileName") String fileName,
+                                      @Param("pattern") String pattern);
+
+    //조회 API 는 엔티티 대신 PhotoDto 로 바로 조회한다. 영속성 컨텍스트에 올라가지 않아 스냅샷, 프록시 초기화가 없다.
+    //album_id 는 사진 테이블의 외래키 컬럼을 그대로 읽으므로 앨범을 join 하지 않는다
+    String PHOTO_DTO = "select new com.squarecross.photoalbum.dto.PhotoDto(p.photoId, p.fileName, p.fileSize, " +
+            "p.originalUrl, p.thumbUrl, p.uploadedAt, p.album.albumId, p.thumbStatus) from Photo p ";
+
+    @Query(PHOTO_DTO + "where p.photoId = :photoId")
+    Optional<PhotoDto> findDtoById(@Param("photoId") Long photoId);
+
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId")
+    List<PhotoDto> findDtosByAlbumId(@Param("albumId") Long albumId, Sort sort);
+
+    //앨범 삭제 시 사진을 한 장씩 로드하지 않고 한 번에 지운다
+    @Modifying
+    @Query("delete from Photo p where p.album.albumId = :albumId")
+    int deleteAllByAlbumIdInBulk(@Param("albumId") Long albumId);
+
+    @Query("select p.fileName from Photo p where p.album.albumId = :albumId and p.fileName in :fileNames")
+    List<String> findFileNamesIn(@Param("albumId") Long albumId, @Param("fileNames") Collection<String> fileNames);
+
+    //앨범 디렉토리에 저장된 사진 여러 장을 다른 앨범으로 옮길 때 앨범과 URL 을 한 번에 바꾼다. 파일명은 그대로 유지된다
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Photo p set p.album = :album, " +
+            "p.originalUrl = concat('/photos/original/', :albumPath, '/', p.fileName), " +
+            "p.thumbUrl = concat('/photos/thumb/', :albumPath, '/', p.fileName) " +
+            "where p.photoId in :photoIds")
+    int moveToAlbum(@Param("album") Album album, @Param("albumPath") String albumPath, @Param("photoIds") Collection<Long> photoIds);
+
+    //내용 주소로 저장된 사진은 URL 이 앨범과 무관하므로 앨범만 바꾼다
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Photo p set p.album = :album where p.photoId in :photoIds")
+    int moveStoredToAlbum(@Param("album") Album album, @Param("photoIds") Collection<Long> photoIds);
+
+    //앨범 내보내기에 필요한 컬럼만 조회
+    @Query("select p.photoId as photoId, p.fileName as fileName, p.originalUrl as originalUrl, p.fileSize as fileSize " +
+            "from Photo p where p.album.albumId = :albumId order by p.photoId")
+    List<ExportManifestEntry> findExportManifest(@Param("albumId") Long albumId);
+
+    @Transactional
+    @Modifying
+    @Query("update Photo p set p.thumbStatus = :status where p.photoId = :photoId")
+    int updateThumbStatus(@Param("photoId") Long photoId, @Param("status") ThumbnailStatus status);
+
+    @Query("select p.photoId as id, p.album.albumId as albumId, p.fileName as name from Photo p " +
+            "where p.photoId > :afterId order by p.photoId")
+    List<SearchEntry> findSearchEntries(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select p.photoId from Photo p where p.thumbStatus = :status and p.photoId > :afterId order by p.photoId")
+    List<Long> findIdsByThumbStatus(@Param("status") ThumbnailStatus status, @Param("afterId") Long afterId, Pageable pageable);
+
+    //Keyset 페이지네이션. 첫 페이지는 Pageable 의 Sort 로, 이후 페이지는 커서(정렬 값, photoId) 이후부터 조회
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId")
+    List<PhotoDto> findDtosByAlbumId(@Param("albumId") Long albumId, Pageable pageable);
+
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId " +
+            "and (p.uploadedAt < :uploadedAt or (p.uploadedAt = :uploadedAt and p.photoId < :photoId)) " +
+            "order by p.uploadedAt desc, p.photoId desc")
+    List<PhotoDto> findPageByUploadedAtDesc(@Param("albumId") Long albumId, @Param("uploadedAt") Date uploadedAt,
+                                            @Param("photoId") Long photoId, Pageable pageable);
 
-    List<Photo> findAllByAlbum_AlbumIdOrderByFileNameAsc(Long AlbumId);
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId " +
+            "and (p.uploadedAt > :uploadedAt or (p.uploadedAt = :uploadedAt and p.photoId > :photoId)) " +
+            "order by p.uploadedAt asc, p.photoId asc")
+    List<PhotoDto> findPageByUploadedAtAsc(@Param("albumId") Long albumId, @Param("uploadedAt") Date uploadedAt,
+                                           @Param("photoId") Long photoId, Pageable pageable);
 
-    List<Photo> findAllByAlbum_AlbumIdOrderByUploadedAtDesc(Long AlbumId);
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId " +
+            "and (p.fileName < :fileName or (p.fileName = :fileName and p.photoId < :photoId)) " +
+            "order by p.fileName desc, p.photoId desc")
+    List<PhotoDto> findPageByFileNameDesc(@Param("albumId") Long albumId, @Param("fileName") String fileName,
+                                          @Param("photoId") Long photoId, Pageable pageable);
 
-    List<Photo> findAllByAlbum_AlbumIdOrderByUploadedAtAsc(Long AlbumId);
+    @Query(PHOTO_DTO + "where p.album.albumId = :albumId " +
+            "and (p.fileName > :fileName or (p.fileName = :fileName and p.photoId > :photoId)) " +
+            "order by p.fileName asc, p.photoId asc")
+    List<PhotoDto> findPageByFileNameAsc(@Param("albumId") Long albumId, @Param("fileName") String fileName,
+                                         @Param("photoId") Long photoId, Pageable pageable);
 }
@@ -0,0 +1,10 @@
+package com.squarecross.photoalbum.repository;
+
+public interface SearchEntry {
+    Long getId();
+
+    //사진이 들어있는 앨범. 앨범이면 null
+    Long getAlbumId();
+
+    String getName();
+}
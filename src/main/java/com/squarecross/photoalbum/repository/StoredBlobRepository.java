@@ -0,0 +1,57 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.StoredBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    //파일을 저장하기 전에 행을 만들거나 touched_at 만 갱신한다. 참조 수는 바꾸지 않는다.
+    //여러 인스턴스가 같은 내용을 처음 올려도 upsert 라 행은 하나만 생긴다.
+    //바깥 트랜잭션이 롤백되어도 purge 가 파일을 찾을 수 있도록 따로 커밋한다
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "insert into stored_blob (hash, size, ref_count, created_at, touched_at) " +
+            "values (:hash, :size, 0, :now, :now) on duplicate key update touched_at = :now", nativeQuery = true)
+    int touch(@Param("hash") String hash, @Param("size") long size, @Param("now") Date now);
+
+    //사진 행을 넣는 트랜잭션 안에서만 부른다. 사진 행이 롤백되면 참조 수도 같이 롤백된다
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query(value = "insert into stored_blob (hash, size, ref_count, created_at, touched_at) " +
+            "values (:hash, :size, 1, :now, :now) on duplicate key update ref_count = ref_count + 1", nativeQuery = true)
+    int addReference(@Param("hash") String hash, @Param("size") long size, @Param("now") Date now);
+
+    @Transactional
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount - 1 where b.hash = :hash")
+    int releaseReference(@Param("hash") String hash);
+
+    //앨범의 사진이 가리키는 파일마다 그 앨범에서 참조하는 수만큼 한 번에 줄인다. 사진을 지우기 전에 호출해야 한다
+    @Transactional
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount - " +
+            "(select count(p) from Photo p where p.contentHash = b.hash and p.album.albumId = :albumId) " +
+            "where b.hash in (select p.contentHash from Photo p where p.album.albumId = :albumId)")
+    int releaseAlbumReferences(@Param("albumId") Long albumId);
+
+    //before 이후에 업로드된 내용은 아직 사진 행이 참조를 늘리기 전일 수 있으므로 빼고 찾는다
+    @Query("select b.hash from StoredBlob b where b.refCount <= 0 and (b.touchedAt is null or b.touchedAt <= :before)")
+    List<String> findUnreferencedHashes(@Param("before") Date before, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StoredBlob b where b.hash = :hash and b.refCount <= 0 " +
+            "and (b.touchedAt is null or b.touchedAt <= :before)")
+    int deleteIfUnreferenced(@Param("hash") String hash, @Param("before") Date before);
+}
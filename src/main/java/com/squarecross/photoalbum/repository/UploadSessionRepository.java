@@ -0,0 +1,15 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.UploadSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    List<UploadSession> findByExpiresAtBefore(Date now, Pageable pageable);
+}
@@ -0,0 +1,340 @@
+package com.squarecross.photoalbum.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//앨범명, 사진 파일명의 메모리 색인. DB 의 LIKE '%keyword%' 전체 스캔 대신 쓴다.
+//부분 일치는 소문자로 바꾼 이름의 1글자, 2글자 조각(n-gram) 역색인에서 가장 짧은 목록만 확인하고,
+//자동완성은 이름과 이름 안의 단어를 정렬해 둔 TreeMap 에서 접두어 범위만 읽는다
+@Component
+public class SearchIndex {
+
+    public enum Type { ALBUM, PHOTO }
+
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::getLength)
+            .thenComparing(Entry::getType)
+            .thenComparing(Entry::getId, Comparator.reverseOrder()); //같은 점수면 짧은 이름, 최근 항목 순
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Type, Map<Long, Entry>> entries = new EnumMap<>(Type.class);
+    private final Map<Long, Set<Entry>> photosByAlbum = new HashMap<>();
+    private final Map<String, Set<Entry>> grams = new HashMap<>();
+    private final TreeMap<String, Set<Entry>> words = new TreeMap<>();
+
+    //시작할 때 DB 에서 전부 읽어오기 전에는 검색 결과가 빠질 수 있다
+    private volatile boolean ready;
+
+    public SearchIndex() {
+        for(Type type : Type.values()) {
+            entries.put(type, new HashMap<>());
+        }
+    }
+
+    //같은 항목이 있으면 바꾸고, 바뀌기 전 항목을 돌려준다 (롤백할 때 되돌리기 위해)
+    public Entry put(Type type, Long id, Long albumId, String name) {
+        if(id == null || name == null) {
+            return null;
+        }
+        Entry entry = new Entry(type, id, albumId, name);
+        lock.writeLock().lock();
+        try {
+            Entry previous = unlink(type, id);
+            link(entry);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Entry remove(Type type, Long id) {
+        lock.writeLock().lock();
+        try {
+            return unlink(type, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //put, remove 가 돌려준 이전 항목을 다시 넣는다
+    public void restore(Type type, Long id, Entry previous) {
+        lock.writeLock().lock();
+        try {
+            unlink(type, id);
+            if(previous != null) {
+                link(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //앨범과 앨범의 사진을 모두 지운다
+    public void removeAlbum(Long albumId) {
+        lock.writeLock().lock();
+        try {
+            unlink(Type.ALBUM, albumId);
+            Set<Entry> photos = photosByAlbum.get(albumId);
+            if(photos != null) {
+                for(Entry photo : new ArrayList<>(photos)) {
+                    unlink(Type.PHOTO, photo.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //keyword 를 포함하는 항목을 점수순으로 offset 부터 limit 개 돌려준다. type 이 null 이면 앨범과 사진 모두
+    public List<Hit> search(String keyword, Type type, int offset, int limit) {
+        String query = normalize(keyword);
+        if(query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for(Entry entry : candidates(query)) {
+                if((type == null || entry.getType() == type) && entry.normalized.contains(query)) {
+                    hits.add(new Hit(entry, score(entry.normalized, query)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingInt(Hit::getScore).reversed().thenComparing(Hit::getEntry, RANKING));
+        if(offset >= hits.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(hits.subList(offset, Math.min(hits.size(), offset + limit)));
+    }
+
+    //keyword 를 포함하는 앨범 ID. 정렬은 호출하는 쪽에서 한다
+    public Set<Long> findAlbumIds(String keyword) {
+        String query = normalize(keyword);
+        Set<Long> albumIds = new HashSet<>();
+        if(query.isEmpty()) {
+            return albumIds;
+        }
+        lock.readLock().lock();
+        try {
+            for(Entry entry : candidates(query)) {
+                if(entry.getType() == Type.ALBUM && entry.normalized.contains(query)) {
+                    albumIds.add(entry.getId());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return albumIds;
+    }
+
+    //이름이나 이름 안의 단어가 prefix 로 시작하는 이름을 사전순으로 limit 개 돌려준다
+    public List<String> suggest(String prefix, Type type, int limit) {
+        String query = normalize(prefix);
+        Set<String> names = new LinkedHashSet<>();
+        if(query.isEmpty() || limit <= 0) {
+            return new ArrayList<>(names);
+        }
+        lock.readLock().lock();
+        try {
+            for(Set<Entry> matches : words.subMap(query, true, query + Character.MAX_VALUE, true).values()) {
+                for(Entry entry : matches) {
+                    if(type == null || entry.getType() == type) {
+                        names.add(entry.getName());
+                    }
+                }
+                if(names.size() >= limit) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(names).subList(0, Math.min(limit, names.size()));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        this.ready = true;
+    }
+
+    public int size(Type type) {
+        lock.readLock().lock();
+        try {
+            return entries.get(type).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //조각 목록 중 가장 짧은 것. 실제로 포함하는지는 호출하는 쪽에서 확인한다
+    private Set<Entry> candidates(String query) {
+        Set<Entry> smallest = null;
+        for(String gram : query.length() == 1 ? Set.of(query) : bigrams(query)) {
+            Set<Entry> posting = grams.get(gram);
+            if(posting == null) {
+                return Collections.emptySet();
+            }
+            if(smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        return smallest == null ? Collections.emptySet() : smallest;
+    }
+
+    private void link(Entry entry) {
+        entries.get(entry.getType()).put(entry.getId(), entry);
+        if(entry.getType() == Type.PHOTO && entry.getAlbumId() != null) {
+            photosByAlbum.computeIfAbsent(entry.getAlbumId(), k -> new HashSet<>()).add(entry);
+        }
+        for(String gram : grams(entry.normalized)) {
+            grams.computeIfAbsent(gram, k -> new HashSet<>()).add(entry);
+        }
+        for(String word : words(entry.normalized)) {
+            words.computeIfAbsent(word, k -> new HashSet<>()).add(entry);
+        }
+    }
+
+    private Entry unlink(Type type, Long id) {
+        Entry entry = entries.get(type).remove(id);
+        if(entry == null) {
+            return null;
+        }
+        if(entry.getAlbumId() != null) {
+            detach(photosByAlbum, entry.getAlbumId(), entry);
+        }
+        for(String gram : grams(entry.normalized)) {
+            detach(grams, gram, entry);
+        }
+        for(String word : words(entry.normalized)) {
+            detach(words, word, entry);
+        }
+        return entry;
+    }
+
+    private static <K> void detach(Map<K, Set<Entry>> postings, K key, Entry entry) {
+        Set<Entry> posting = postings.get(key);
+        if(posting != null && posting.remove(entry) && posting.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    //완전히 같으면 4, 이름이 검색어로 시작하면 3, 단어가 검색어로 시작하면 2, 중간에 포함되면 1
+    static int score(String name, String query) {
+        if(name.equals(query)) {
+            return 4;
+        }
+        if(name.startsWith(query)) {
+            return 3;
+        }
+        for(String word : words(name)) {
+            if(word.startsWith(query)) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    static Set<String> grams(String name) {
+        Set<String> grams = new HashSet<>(bigrams(name));
+        for(int i = 0; i < name.length(); i++) {
+            grams.add(name.substring(i, i + 1));
+        }
+        return grams;
+    }
+
+    static Set<String> bigrams(String name) {
+        Set<String> bigrams = new HashSet<>();
+        for(int i = 0; i + 2 <= name.length(); i++) {
+            bigrams.add(name.substring(i, i + 2));
+        }
+        return bigrams;
+    }
+
+    //이름 전체와 공백, _, -, . 으로 나눈 단어
+    static Set<String> words(String name) {
+        Set<String> words = new HashSet<>();
+        words.add(name);
+        for(String word : name.split("[\\s_.\\-]+")) {
+            if(!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static final class Entry {
+        private final Type type;
+        private final Long id;
+        private final Long albumId;
+        private final String name;
+        private final String normalized;
+
+        private Entry(Type type, Long id, Long albumId, String name) {
+            this.type = type;
+            this.id = id;
+            this.albumId = albumId;
+            this.name = name;
+            this.normalized = normalize(name);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        //사진이 들어있는 앨범. 앨범 항목이면 null
+        public Long getAlbumId() {
+            return albumId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private int getLength() {
+            return normalized.length();
+        }
+    }
+
+    public static final class Hit {
+        private final Entry entry;
+        private final int score;
+
+        private Hit(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+}
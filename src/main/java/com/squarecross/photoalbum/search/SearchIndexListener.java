@@ -0,0 +1,82 @@
+package com.squarecross.photoalbum.search;
+
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.domain.Photo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//Album, Photo 가 저장, 수정, 삭제되면 검색 색인에 바로 반영하고 트랜잭션이 롤백되면 거꾸로 되돌린다.
+//bulk UPDATE/DELETE 는 엔티티 콜백이 불리지 않으므로 서비스에서 직접 반영한다
+public class SearchIndexListener {
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        if(entity instanceof Album) {
+            Album album = (Album) entity;
+            record(SearchIndex.Type.ALBUM, album.getAlbumId(),
+                    searchIndex.put(SearchIndex.Type.ALBUM, album.getAlbumId(), null, album.getAlbumName()));
+        } else if(entity instanceof Photo) {
+            Photo photo = (Photo) entity;
+            Long albumId = photo.getAlbum() != null ? photo.getAlbum().getAlbumId() : null;
+            record(SearchIndex.Type.PHOTO, photo.getPhotoId(),
+                    searchIndex.put(SearchIndex.Type.PHOTO, photo.getPhotoId(), albumId, photo.getFileName()));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if(entity instanceof Album) {
+            Long albumId = ((Album) entity).getAlbumId();
+            record(SearchIndex.Type.ALBUM, albumId, searchIndex.remove(SearchIndex.Type.ALBUM, albumId));
+        } else if(entity instanceof Photo) {
+            Long photoId = ((Photo) entity).getPhotoId();
+            record(SearchIndex.Type.PHOTO, photoId, searchIndex.remove(SearchIndex.Type.PHOTO, photoId));
+        }
+    }
+
+    //트랜잭션마다 되돌릴 내용을 하나의 목록에 모아 둔다
+    private void record(SearchIndex.Type type, Long id, SearchIndex.Entry previous) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        UndoLog undoLog = (UndoLog) TransactionSynchronizationManager.getResource(this);
+        if(undoLog == null) {
+            undoLog = new UndoLog(this);
+            TransactionSynchronizationManager.bindResource(this, undoLog);
+            TransactionSynchronizationManager.registerSynchronization(undoLog);
+        }
+        undoLog.changes.push(new Object[]{type, id, previous});
+    }
+
+    private class UndoLog implements TransactionSynchronization {
+        private final Object key;
+        private final Deque<Object[]> changes = new ArrayDeque<>();
+
+        private UndoLog(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            if(status != STATUS_ROLLED_BACK) {
+                return;
+            }
+            Object[] change;
+            while ((change = changes.poll()) != null) {
+                searchIndex.restore((SearchIndex.Type) change[0], (Long) change[1], (SearchIndex.Entry) change[2]);
+            }
+        }
+    }
+}
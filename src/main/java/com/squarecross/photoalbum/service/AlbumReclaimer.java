@@ -0,0 +1,110 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.AlbumReclaimTask;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.repository.AlbumReclaimTaskRepository;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//삭제된 앨범 디렉토리의 파일을 저장소에서 배치 단위로 지운다.
+//초당 삭제 수를 제한해 다른 요청의 디스크 I/O 를 잡아먹지 않게 하고, 작업은 DB 에 남아 있어 서버가 죽어도 다음 실행에서 이어 지운다
+@Service
+public class AlbumReclaimer {
+
+    private static final Logger log = LoggerFactory.getLogger(AlbumReclaimer.class);
+    private static final int CHUNKS_PER_SECOND = 10;
+
+    @Autowired
+    private AlbumReclaimTaskRepository albumReclaimTaskRepository;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Value("${photoalbum.reclaim.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${photoalbum.reclaim.files-per-second:500}")
+    private int filesPerSecond;
+
+    //이번 실행에서 지운 파일 수와 시작 시각. 스케줄러 스레드 하나에서만 쓴다
+    private int deletedInRun;
+    private long startedAt;
+
+    @Scheduled(fixedDelayString = "${photoalbum.reclaim.interval-ms:5000}")
+    public void reclaim() {
+        int budget = batchSize;
+        deletedInRun = 0;
+        startedAt = System.nanoTime();
+        for(AlbumReclaimTask task : albumReclaimTaskRepository.findAllByOrderByTaskIdAsc()) {
+            if(budget <= 0) {
+                break;
+            }
+            try {
+                budget -= reclaim(task, budget);
+            } catch (IOException e) {
+                log.warn("Reclaiming album {} failed, will retry: {}", task.getAlbumId(), e.getMessage());
+            }
+        }
+    }
+
+    //이번 배치에서 지운 파일 수를 반환한다. 디렉토리가 비면 디렉토리와 작업을 지운다
+    private int reclaim(AlbumReclaimTask task, int budget) throws IOException {
+        int deleted = deleteFiles("/photos/original/" + task.getAlbumId(), budget);
+        deleted += deleteFiles("/photos/thumb/" + task.getAlbumId(), budget - deleted);
+        if(deleted > 0) {
+            albumReclaimTaskRepository.addDeletedFiles(task.getTaskId(), deleted);
+        }
+
+        if(deleted < budget) {
+            albumReclaimTaskRepository.deleteById(task.getTaskId());
+            log.info("Reclaimed album {} ({} files)", task.getAlbumId(), task.getDeletedFiles() + deleted);
+        }
+        return deleted;
+    }
+
+    //저장소에 조금씩 나눠서 지우게 하고, 나눈 단위마다 속도를 맞춘다. limit 보다 적게 지웠으면 디렉토리가 빈 것이다
+    private int deleteFiles(String dirKey, int limit) throws IOException {
+        int deleted = 0;
+        int chunkSize = filesPerSecond > 0 ? Math.max(1, filesPerSecond / CHUNKS_PER_SECOND) : limit;
+        while (deleted < limit) {
+            int chunk = Math.min(limit - deleted, chunkSize);
+            long deleteStartedAt = System.nanoTime();
+            int count = photoStorage.deleteDirectory(dirKey, chunk);
+            photoMetrics.recordDisk(PhotoMetrics.DELETE, System.nanoTime() - deleteStartedAt);
+            deleted += count;
+            deletedInRun += count;
+            throttle();
+            if(count < chunk) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    //지금까지 지운 수가 초당 허용량을 넘으면 그만큼 쉰다
+    private void throttle() {
+        if(filesPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = TimeUnit.SECONDS.toNanos(deletedInRun) / filesPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - startedAt);
+        if(aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -2,21 +2,35 @@ package com.squarecross.photoalbum.service;
 
 import com.squarecross.photoalbum.Constants;
 import com.squarecross.photoalbum.domain.Album;
-import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.AlbumReclaimTask;
 import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.CursorPageDto;
 import com.squarecross.photoalbum.mapper.AlbumMapper;
+import com.squarecross.photoalbum.repository.AlbumPhotoCount;
+import com.squarecross.photoalbum.repository.AlbumReclaimTaskRepository;
 import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.AlbumSummary;
+import com.squarecross.photoalbum.repository.AlbumThumbUrl;
 import com.squarecross.photoalbum.repository.PhotoRepository;
-import org.apache.tomcat.util.http.fileupload.FileUtils;
+import com.squarecross.photoalbum.search.SearchIndex;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityNotFoundException;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
@@ -25,63 +39,203 @@ import java.util.stream.Collectors;
 @Service
 public class AlbumService {
 
+    private static final int SUMMARY_BATCH_SIZE = 1000;
+
     @Autowired
     private AlbumRepository albumRepository;
 
+    @Autowired
+    private AlbumReclaimTaskRepository albumReclaimTaskRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
     @Autowired
     private PhotoRepository photoRepository;
 
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Timed("photoalbum.service")
     public AlbumDto getAlbum(Long albumId) {
-        Optional<Album> res = albumRepository.findById(albumId);
+        return metadataCache.getAlbum(albumId, this::loadAlbum);
+    }
+
+    private AlbumDto loadAlbum(Long albumId) {
+        Optional<AlbumSummary> res = albumRepository.findSummaryById(albumId);
         if(res.isPresent()) {
-            AlbumDto albumDto = AlbumMapper.convertToDto(res.get());
-            albumDto.setCount(photoRepository.countByAlbum_AlbumId(albumId));
-            return albumDto;
+            return toSummaries(List.of(res.get())).get(0);
         } else {
             throw new EntityNotFoundException(String.format("앨범 아이디 %d으로 조회되지 않았습니다", albumId));
         }
     }
 
+    //검색 색인에서 점수가 가장 높은 앨범을 돌려준다. 시작할 때 색인을 채우는 중이면 DB 에서 찾는다
+    @Timed("photoalbum.service")
     public Album searchAlbum(String searchKeyword) {
         if(searchKeyword == null || searchKeyword.isBlank()) {
             throw new EntityNotFoundException("검색어가 입력되지 않앗습니다.");
         }
-        Optional<Album> findAlbum = albumRepository.findByAlbumNameContainingIgnoreCase(searchKeyword);
+        Optional<Album> findAlbum;
+        if(searchIndex.isReady()) {
+            List<SearchIndex.Hit> hits = searchIndex.search(searchKeyword, SearchIndex.Type.ALBUM, 0, 1);
+            findAlbum = hits.isEmpty() ? Optional.empty() : albumRepository.findById(hits.get(0).getEntry().getId());
+        } else {
+            findAlbum = albumRepository.findByAlbumNameContaining(searchKeyword, PageRequest.of(0, 1)).stream().findFirst();
+        }
         if (findAlbum.isPresent()) {
             return findAlbum.get();
         } else {
-            throw new EntityNotFoundException(String.format("%d로 조회된 결과가 없습니다", searchKeyword));
+            throw new EntityNotFoundException(String.format("%s로 조회된 결과가 없습니다", searchKeyword));
         }
     }
 
+    @Timed("photoalbum.service")
     public List<AlbumDto> getAlbumList(String keyword, String sort, String orderBy) {
-        List<Album> albums;
+        List<AlbumSummary> albums;
+
+        if(keyword != null && !keyword.isEmpty() && searchIndex.isReady()) {
+            albums = findIndexedAlbums(keyword, sort, orderBy);
+        } else if(Objects.equals(sort, "byName") || Objects.equals(sort, "byDate")) {
+            Sort.Direction direction = Objects.equals(orderBy, "desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            albums = albumRepository.findSummaries(keyword,
+                    Sort.by(direction, Objects.equals(sort, "byName") ? "albumName" : "createdAt", "albumId"));
+        } else {
+            throw new IllegalArgumentException("알 수 없는 정렬 기준 입니다.");
+        }
+
+        return toSummaries(albums);
+    }
+
+    //검색어가 들어간 앨범 ID 를 색인에서 찾고, 앨범은 ID 로만 조회해서 정렬한다
+    private List<AlbumSummary> findIndexedAlbums(String keyword, String sort, String orderBy) {
+        Comparator<AlbumSummary> order;
+        if(Objects.equals(sort, "byName")) {
+            order = Comparator.comparing(AlbumSummary::getAlbumName, String.CASE_INSENSITIVE_ORDER);
+        } else if (Objects.equals(sort, "byDate")) {
+            order = Comparator.comparing(AlbumSummary::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else {
+            throw new IllegalArgumentException("알 수 없는 정렬 기준 입니다.");
+        }
+        order = order.thenComparing(AlbumSummary::getAlbumId);
+        if(Objects.equals(orderBy, "desc")) {
+            order = order.reversed();
+        }
+
+        List<Long> albumIds = new ArrayList<>(searchIndex.findAlbumIds(keyword));
+        List<AlbumSummary> albums = new ArrayList<>();
+        for(int from = 0; from < albumIds.size(); from += SUMMARY_BATCH_SIZE) {
+            albums.addAll(albumRepository.findSummariesByIds(albumIds.subList(from, Math.min(from + SUMMARY_BATCH_SIZE, albumIds.size()))));
+        }
+        albums.sort(order);
+        return albums;
+    }
+
+    @Timed("photoalbum.service")
+    public CursorPageDto<AlbumDto> getAlbumPage(String keyword, String sort, String orderBy, String cursor, int size) {
+        PageCursor.checkPageSize(size);
+        boolean desc = Objects.equals(orderBy, "desc");
+        String direction = desc ? "desc" : "asc";
+        PageCursor after = PageCursor.hasCursor(cursor) ? PageCursor.decode(cursor, sort, direction) : null;
+        Pageable limit = PageRequest.of(0, size + 1); //다음 페이지 존재 여부 확인용으로 1건 더 조회
+        List<AlbumSummary> albums;
 
-        if(Objects.equals(sort, "byName")){
-            if(Objects.equals(orderBy, "desc")) {
-                albums = albumRepository.findByAlbumNameContainingOrderByAlbumNameDesc(keyword);
-            }else{
-                albums = albumRepository.findByAlbumNameContainingOrderByAlbumNameAsc(keyword);
+        if(Objects.equals(sort, "byName")) {
+            if(after == null) {
+                albums = albumRepository.findSummaries(keyword,
+                        PageRequest.of(0, size + 1, Sort.by(desc ? Sort.Direction.DESC : Sort.Direction.ASC, "albumName", "albumId")));
+            } else if(desc) {
+                albums = albumRepository.findPageByAlbumNameDesc(keyword, after.getValue(), after.getId(), limit);
+            } else {
+                albums = albumRepository.findPageByAlbumNameAsc(keyword, after.getValue(), after.getId(), limit);
             }
-        } else if (Objects.equals(sort, "byDate")){
-            if(Objects.equals(orderBy, "desc")) {
-                albums = albumRepository.findByAlbumNameContainingOrderByCreatedAtDesc(keyword);
-            }else{
-                albums = albumRepository.findByAlbumNameContainingOrderByCreatedAtAsc(keyword);
+        } else if (Objects.equals(sort, "byDate")) {
+            if(after == null) {
+                albums = albumRepository.findSummaries(keyword,
+                        PageRequest.of(0, size + 1, Sort.by(desc ? Sort.Direction.DESC : Sort.Direction.ASC, "createdAt", "albumId")));
+            } else if(desc) {
+                albums = albumRepository.findPageByCreatedAtDesc(keyword, new Date(after.getValueAsLong()), after.getId(), limit);
+            } else {
+                albums = albumRepository.findPageByCreatedAtAsc(keyword, new Date(after.getValueAsLong()), after.getId(), limit);
             }
         } else {
             throw new IllegalArgumentException("알 수 없는 정렬 기준 입니다.");
         }
 
-        List<AlbumDto> albumDtos = AlbumMapper.convertToDtoList(albums);
+        String nextCursor = null;
+        if(albums.size() > size) {
+            albums = albums.subList(0, size);
+            AlbumSummary last = albums.get(size - 1);
+            String value = Objects.equals(sort, "byName") ? last.getAlbumName() : String.valueOf(last.getCreatedAt().getTime());
+            nextCursor = new PageCursor(sort, direction, last.getAlbumId(), value).encode();
+        }
+
+        return new CursorPageDto<>(toSummaries(albums), nextCursor);
+    }
 
-        for(AlbumDto albumDto : albumDtos) {
-            List<Photo> top4 = photoRepository.findTop4ByAlbum_AlbumIdOrderByUploadedAtDesc(albumDto.getAlbumId());
-            albumDto.setThumbUrls(top4.stream().map(Photo::getThumbUrl).map(c -> Constants.PATH_PREFIX + c).collect(Collectors.toList()));
+    //앨범에 저장된 사진 수, 크기, 표지를 쓰고, 아직 집계되지 않은 앨범만 사진 테이블에서 묶어서 조회한다
+    private List<AlbumDto> toSummaries(List<AlbumSummary> albums) {
+        List<AlbumDto> albumDtos = new ArrayList<>();
+        List<AlbumDto> missing = new ArrayList<>();
+        for(AlbumSummary album : albums) {
+            AlbumDto albumDto = new AlbumDto();
+            albumDto.setAlbumId(album.getAlbumId());
+            albumDto.setAlbumName(album.getAlbumName());
+            albumDto.setCreatedAt(album.getCreatedAt());
+            if(album.getPhotoCount() != null) {
+                albumDto.setCount(album.getPhotoCount());
+                albumDto.setTotalBytes(album.getTotalBytes());
+                albumDto.setThumbUrls(coverThumbUrls(album));
+            } else {
+                missing.add(albumDto);
+            }
+            albumDtos.add(albumDto);
         }
+        fillAlbumSummaries(missing);
         return albumDtos;
     }
 
+    private List<String> coverThumbUrls(AlbumSummary album) {
+        List<String> thumbUrls = new ArrayList<>();
+        if(album.getCoverThumbUrls() != null) {
+            for(String thumbUrl : album.getCoverThumbUrls().split("\n")) {
+                if(!thumbUrl.isEmpty()) {
+                    thumbUrls.add(Constants.PATH_PREFIX + thumbUrl);
+                }
+            }
+        }
+        return thumbUrls;
+    }
+
+    //앨범 수와 관계없이 SUMMARY_BATCH_SIZE 단위로 사진 수, 썸네일을 묶어서 조회한다
+    private void fillAlbumSummaries(List<AlbumDto> albumDtos) {
+        for(int from = 0; from < albumDtos.size(); from += SUMMARY_BATCH_SIZE) {
+            List<AlbumDto> batch = albumDtos.subList(from, Math.min(from + SUMMARY_BATCH_SIZE, albumDtos.size()));
+            List<Long> albumIds = batch.stream().map(AlbumDto::getAlbumId).collect(Collectors.toList());
+
+            Map<Long, AlbumPhotoCount> counts = new HashMap<>();
+            for(AlbumPhotoCount count : photoRepository.countByAlbumIds(albumIds)) {
+                counts.put(count.getAlbumId(), count);
+            }
+
+            Map<Long, List<String>> thumbUrls = new HashMap<>();
+            for(AlbumThumbUrl thumb : photoRepository.findTop4ThumbUrlsByAlbumIds(albumIds)) {
+                thumbUrls.computeIfAbsent(thumb.getAlbumId(), k -> new ArrayList<>()).add(Constants.PATH_PREFIX + thumb.getThumbUrl());
+            }
+
+            for(AlbumDto albumDto : batch) {
+                AlbumPhotoCount count = counts.get(albumDto.getAlbumId());
+                albumDto.setCount(count != null ? count.getPhotoCount().intValue() : 0);
+                albumDto.setTotalBytes(count != null ? count.getTotalBytes() : 0L);
+                albumDto.setThumbUrls(thumbUrls.getOrDefault(albumDto.getAlbumId(), new ArrayList<>()));
+            }
+        }
+    }
+
+    @Timed("photoalbum.service")
     public AlbumDto changeName(Long AlbumId, AlbumDto albumDto) {
         Optional<Album> album = this.albumRepository.findById(AlbumId);
         if(album.isEmpty()) {
@@ -90,43 +244,40 @@ public class AlbumService {
         Album updateAlbum = album.get();
         updateAlbum.setAlbumName(albumDto.getAlbumName());
         Album savedAlbum = this.albumRepository.save(updateAlbum);
+        metadataCache.evictAlbum(AlbumId);
         return AlbumMapper.convertToDto(savedAlbum);
     }
 
+    //사진과 앨범 행은 bulk DELETE 로 바로 지우고 툼스톤을 남긴다. 앨범 디렉토리의 파일은 AlbumReclaimer 가 백그라운드에서 지운다
+    @Timed("photoalbum.service")
+    @Transactional
     public void deleteAlbum(Long AlbumId) throws IOException {
-        Optional<Album> album = this.albumRepository.findById(AlbumId);
-
-        if(album.isPresent()) {
-            Album deleteAlbum = album.get();
-            this.albumRepository.deleteById(AlbumId);
-            this.deleteAlbumFiles(deleteAlbum);
-            this.deleteAlbumDirectories(deleteAlbum);
-        } else {
+        if(!this.albumRepository.existsById(AlbumId)) {
             throw new NoSuchElementException(String.format("Album ID '%d'가 존재하지 않습니다.", AlbumId));
         }
 
+        this.blobStore.releaseAlbum(AlbumId); //내용 주소로 저장된 원본은 참조 수만 줄이고, 0 이 되면 BlobStore 가 지운다
+        this.photoRepository.deleteAllByAlbumIdInBulk(AlbumId);
+        this.albumRepository.deleteByIdInBulk(AlbumId);
+        this.albumReclaimTaskRepository.save(new AlbumReclaimTask(AlbumId));
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                metadataCache.evictAlbumAndPhotos(AlbumId);
+                searchIndex.removeAlbum(AlbumId); //bulk DELETE 는 엔티티 콜백이 불리지 않는다
+            }
+        });
     }
 
+    @Timed("photoalbum.service")
     public AlbumDto createAlbum(AlbumDto albumDto) throws IOException {
         Album album = AlbumMapper.convertToModel(albumDto);
-        this.albumRepository.save(album);
-        this.createAlbumDirectories(album);
+        album.setPhotoCount(0); //새 앨범은 처음부터 집계한다
+        album.setTotalBytes(0L);
+        album.setCoverThumbUrls("");
+        this.albumRepository.save(album); //앨범 디렉토리는 저장소가 첫 파일을 쓸 때 만든다
         return AlbumMapper.convertToDto(album);
     }
 
-    private void createAlbumDirectories(Album album) throws IOException {
-        Files.createDirectories(Paths.get(Constants.PATH_PREFIX + "/photos/original/" + album.getAlbumId()));
-        Files.createDirectories(Paths.get(Constants.PATH_PREFIX + "/photos/thumb/" + album.getAlbumId()));
-    }
-
-    private void deleteAlbumDirectories(Album album) throws IOException {
-        Files.deleteIfExists(Paths.get(Constants.PATH_PREFIX + "/photos/original/" + album.getAlbumId()));
-        Files.deleteIfExists(Paths.get(Constants.PATH_PREFIX + "/photos/thumb/" + album.getAlbumId()));
-    }
-
-    private void deleteAlbumFiles(Album album) throws IOException {
-        FileUtils.cleanDirectory(new File(Constants.PATH_PREFIX + "/photos/original/" + album.getAlbumId()));
-        FileUtils.cleanDirectory(new File(Constants.PATH_PREFIX + "/photos/thumb/" + album.getAlbumId()));
-    }
-
 }
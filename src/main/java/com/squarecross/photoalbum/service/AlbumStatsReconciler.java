@@ -0,0 +1,81 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.repository.AlbumPhotoCount;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.AlbumThumbUrl;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+//앨범에 저장된 사진 수, 크기, 표지를 사진 테이블과 비교해서 다르면 다시 계산한다.
+//아직 집계되지 않은 예전 앨범(null)도 여기서 채운다
+@Service
+public class AlbumStatsReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(AlbumStatsReconciler.class);
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Scheduled(fixedDelayString = "${photoalbum.album-stats.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        int repaired = 0;
+        long afterId = 0L;
+        List<Album> albums;
+        do {
+            albums = albumRepository.findByAlbumIdGreaterThanOrderByAlbumIdAsc(afterId, PageRequest.of(0, BATCH_SIZE));
+            if(albums.isEmpty()) {
+                break;
+            }
+            List<Long> albumIds = albums.stream().map(Album::getAlbumId).collect(Collectors.toList());
+
+            Map<Long, AlbumPhotoCount> counts = new HashMap<>();
+            for(AlbumPhotoCount count : photoRepository.countByAlbumIds(albumIds)) {
+                counts.put(count.getAlbumId(), count);
+            }
+            Map<Long, List<String>> covers = new HashMap<>();
+            for(AlbumThumbUrl thumb : photoRepository.findTop4ThumbUrlsByAlbumIds(albumIds)) {
+                covers.computeIfAbsent(thumb.getAlbumId(), k -> new ArrayList<>()).add(thumb.getThumbUrl());
+            }
+
+            for(Album album : albums) {
+                AlbumPhotoCount count = counts.get(album.getAlbumId());
+                long photoCount = count != null ? count.getPhotoCount() : 0L;
+                long totalBytes = count != null && count.getTotalBytes() != null ? count.getTotalBytes() : 0L;
+                String coverThumbUrls = String.join("\n", covers.getOrDefault(album.getAlbumId(), List.of()));
+                if(album.getPhotoCount() == null || album.getPhotoCount() != photoCount
+                        || !Objects.equals(album.getTotalBytes(), totalBytes)
+                        || !Objects.equals(album.getCoverThumbUrls(), coverThumbUrls)) {
+                    //비교한 뒤에 사진이 바뀌었을 수 있으므로 값을 그대로 쓰지 않고 한 문장으로 다시 계산한다
+                    albumRepository.refreshPhotoStats(album.getAlbumId());
+                    metadataCache.evictAlbum(album.getAlbumId());
+                    repaired++;
+                }
+            }
+            afterId = albumIds.get(albumIds.size() - 1);
+        } while (albums.size() == BATCH_SIZE);
+
+        if(repaired > 0) {
+            log.info("Reconciled photo stats of {} albums", repaired);
+        }
+    }
+}
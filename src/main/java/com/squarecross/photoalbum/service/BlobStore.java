@@ -0,0 +1,176 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.repository.StoredBlobRepository;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+
+//원본을 SHA-256 으로 주소를 매겨 한 번만 저장하고, 사진 행이 가리키는 수를 stored_blob.ref_count 로 관리한다.
+//해시는 임시 파일에 쓰는 동안 계산하므로 업로드 스트림은 한 번만 읽는다.
+//put 은 파일만 저장하고, 참조는 사진 행을 넣는 트랜잭션에서 addReference 로 늘린다. 그 사이에는 touched_at 유예 시간으로 purge 를 막는다
+@Component
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+    private static final int LOCK_STRIPES = 64;
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    //업로드한 뒤 사진 행이 참조를 늘릴 때까지 기다려주는 시간
+    @Value("${photoalbum.blob.purge-grace-ms:600000}")
+    private long purgeGraceMs;
+
+    //같은 해시의 저장/삭제가 겹치지 않도록 해시별로 잠근다
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public BlobStore() {
+        for(int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    //업로드 스트림을 저장한다. 이미 있는 내용이면 임시 파일만 지우고 duplicate 로 돌려준다
+    public StoredFile put(InputStream source) throws IOException {
+        Path temp = photoStorage.createStagingFile("upload-");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(source, digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return store(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //해시를 이미 확인한 로컬 파일(이어받기 업로드)을 저장한다. 파일은 저장소로 옮겨지거나 지워진다
+    public StoredFile put(Path staged, String hash, long size) throws IOException {
+        try {
+            return store(staged, hash, size);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private StoredFile store(Path temp, String hash, long size) throws IOException {
+        String key = originalUrl(hash);
+        synchronized (lockFor(hash)) {
+            //행을 먼저 만들어 두면 사진 행을 넣기 전에 중단되어도 purge 가 유예 시간 뒤에 파일을 지운다
+            storedBlobRepository.touch(hash, size, new Date());
+            if(photoStorage.exists(key)) {
+                return new StoredFile(hash, size, true);
+            }
+            photoStorage.put(key, temp); //행은 있는데 파일이 없으면(이전 저장 중 중단) 이번 파일로 채운다
+            return new StoredFile(hash, size, false);
+        }
+    }
+
+    //사진 행을 넣는 트랜잭션 안에서 부른다
+    public void addReference(StoredFile stored) {
+        storedBlobRepository.addReference(stored.getHash(), stored.getSize(), new Date());
+    }
+
+    public void release(String hash) {
+        storedBlobRepository.releaseReference(hash);
+    }
+
+    //앨범 삭제 시 앨범의 사진이 가리키던 참조를 한 번에 줄인다
+    public void releaseAlbum(Long albumId) {
+        storedBlobRepository.releaseAlbumReferences(albumId);
+    }
+
+    //파일은 해시 앞 두 글자로 나눈 디렉토리에 둔다
+    public static String originalUrl(String hash) {
+        return "/photos/blobs/" + hash.substring(0, 2) + "/" + hash;
+    }
+
+    public static String thumbUrl(String hash, String ext) {
+        return thumbDirOf(hash) + "/" + hash + "." + ext;
+    }
+
+    private static String thumbDirOf(String hash) {
+        return "/photos/blob-thumbs/" + hash.substring(0, 2);
+    }
+
+    //참조가 없어진 파일을 원본, 썸네일 모두 지운다
+    @Scheduled(fixedDelayString = "${photoalbum.blob.purge-interval-ms:60000}")
+    public void purgeUnreferenced() {
+        int purged = 0;
+        Date before = new Date(System.currentTimeMillis() - purgeGraceMs);
+        for(String hash : storedBlobRepository.findUnreferencedHashes(before, PageRequest.of(0, PURGE_BATCH_SIZE))) {
+            synchronized (lockFor(hash)) {
+                if(storedBlobRepository.deleteIfUnreferenced(hash, before) == 0) {
+                    continue; //그 사이에 다시 업로드됨
+                }
+                try {
+                    photoStorage.delete(originalUrl(hash));
+                    photoStorage.deleteVariants(thumbDirOf(hash), hash);
+                    purged++;
+                } catch (IOException e) {
+                    log.warn("Could not delete blob {}: {}", hash, e.getMessage());
+                }
+            }
+        }
+        if(purged > 0) {
+            log.info("Purged {} unreferenced blobs", purged);
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class StoredFile {
+        private final String hash;
+        private final long size;
+        private final boolean duplicate;
+
+        StoredFile(String hash, long size, boolean duplicate) {
+            this.hash = hash;
+            this.size = size;
+            this.duplicate = duplicate;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.ExportJob;
+import com.squarecross.photoalbum.domain.ExportStatus;
+import com.squarecross.photoalbum.dto.ExportJobDto;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.export.ZipExporter;
+import com.squarecross.photoalbum.mapper.ExportJobMapper;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.ExportJobRepository;
+import com.squarecross.photoalbum.repository.ExportManifestEntry;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+//앨범 전체를 백그라운드에서 zip 으로 만들어두고, 완성된 파일을 Range 요청으로 이어받을 수 있게 한다
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+    private static final List<ExportStatus> REUSABLE = List.of(ExportStatus.PENDING, ExportStatus.RUNNING, ExportStatus.COMPLETED);
+    private static final int PROGRESS_INTERVAL = 100; //진행률은 엔트리 100개마다 DB 에 기록
+
+    //내보내기 결과는 저장소가 아니라 로컬 디스크에 잠시 두었다가 지운다
+    private final Path export_path = Paths.get(Constants.PATH_PREFIX + "/exports");
+
+    @Autowired
+    private ExportJobRepository exportJobRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private ZipExporter zipExporter;
+
+    @Autowired
+    @Qualifier("exportExecutor")
+    private ExecutorService exportExecutor;
+
+    @Value("${photoalbum.export.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    //exportId 별로 전송 중인 다운로드 수. 전송 중인 압축 파일은 만료되어도 지우지 않는다.
+    //다운로드 시작과 만료 처리는 이 Map 을 잠그고 상태를 확인하므로, 지운 파일을 내려주기 시작하는 일이 없다
+    private final Map<Long, Integer> activeDownloads = new HashMap<>();
+
+    //앨범 구성이 그대로면 진행 중이거나 완성된 작업을 그대로 돌려준다
+    public synchronized ExportJobDto createExport(Long albumId) {
+        if(!albumRepository.existsById(albumId)) {
+            throw new EntityNotFoundException(String.format("앨범 아이디 %d으로 조회되지 않았습니다", albumId));
+        }
+        List<ExportManifestEntry> manifest = photoRepository.findExportManifest(albumId);
+        String fingerprint = fingerprint(manifest);
+
+        Optional<ExportJob> reusable = exportJobRepository
+                .findFirstByAlbumIdAndFingerprintAndStatusInOrderByExportIdDesc(albumId, fingerprint, REUSABLE);
+        if(reusable.isPresent() && !isExpired(reusable.get())) {
+            return ExportJobMapper.convertToDto(reusable.get());
+        }
+
+        ExportJob exportJob = new ExportJob();
+        exportJob.setAlbumId(albumId);
+        exportJob.setStatus(ExportStatus.PENDING);
+        exportJob.setFingerprint(fingerprint);
+        exportJob.setTotalCount(manifest.size());
+        ExportJob savedJob = exportJobRepository.save(exportJob);
+        exportExecutor.execute(() -> run(savedJob.getExportId()));
+        return ExportJobMapper.convertToDto(savedJob);
+    }
+
+    public ExportJobDto getExport(Long albumId, Long exportId) {
+        return ExportJobMapper.convertToDto(findExport(albumId, exportId));
+    }
+
+    //다운로드를 시작한다. 전송이 끝나거나 실패하면 반드시 closeArtifact 를 불러야 한다
+    public PhotoFile openArtifact(Long albumId, Long exportId) {
+        synchronized (activeDownloads) {
+            ExportJob exportJob = findExport(albumId, exportId);
+            if(exportJob.getStatus() != ExportStatus.COMPLETED) {
+                throw new IllegalStateException(String.format("내보내기 %d 가 아직 완료되지 않았습니다. (상태: %s)", exportId, exportJob.getStatus()));
+            }
+            activeDownloads.merge(exportId, 1, Integer::sum);
+        }
+        return new PhotoFile(albumId + "_export.zip", artifactPath(exportId));
+    }
+
+    public void closeArtifact(Long exportId) {
+        synchronized (activeDownloads) {
+            activeDownloads.computeIfPresent(exportId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private ExportJob findExport(Long albumId, Long exportId) {
+        Optional<ExportJob> res = exportJobRepository.findById(exportId);
+        if(res.isEmpty() || !res.get().getAlbumId().equals(albumId)) {
+            throw new EntityNotFoundException(String.format("내보내기 ID %d를 찾을 수 없습니다", exportId));
+        }
+        return res.get();
+    }
+
+    void run(Long exportId) {
+        Optional<ExportJob> res = exportJobRepository.findById(exportId);
+        if(res.isEmpty()) {
+            return;
+        }
+        ExportJob exportJob = res.get();
+        exportJob.setStatus(ExportStatus.RUNNING);
+        exportJob.setProcessedCount(0);
+        exportJob = exportJobRepository.save(exportJob);
+
+        //작성 중인 파일은 .part 로 두고, 다 쓰면 최종 이름으로 옮긴다
+        Path partPath = export_path.resolve(exportId + ".zip.part");
+        try {
+            Files.createDirectories(export_path);
+            //작업을 만든 뒤 앨범이 바뀌었으면 지금 구성으로 만들고 fingerprint 를 다시 매긴다.
+            //그래야 같은 fingerprint 로 재사용되는 압축 파일이 항상 그 구성과 일치한다
+            List<ExportManifestEntry> manifest = photoRepository.findExportManifest(exportJob.getAlbumId());
+            String fingerprint = fingerprint(manifest);
+            if(!fingerprint.equals(exportJob.getFingerprint())) {
+                log.info("Album {} changed since export {} was requested, re-keying it", exportJob.getAlbumId(), exportId);
+                exportJob.setFingerprint(fingerprint);
+                exportJob.setTotalCount(manifest.size());
+                exportJob = exportJobRepository.save(exportJob);
+            }
+            List<PhotoFile> files = new ArrayList<>();
+            for(ExportManifestEntry entry : manifest) {
+                files.add(new PhotoFile(entry.getFileName(), entry.getOriginalUrl()));
+            }
+            try (OutputStream out = Files.newOutputStream(partPath)) {
+                zipExporter.export(files, out, written -> {
+                    if(written % PROGRESS_INTERVAL == 0) {
+                        exportJobRepository.updateProcessedCount(exportId, written);
+                    }
+                });
+            }
+            Path artifact = Files.move(partPath, artifactPath(exportId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Date now = new Date();
+            exportJob = exportJobRepository.findById(exportId).orElse(exportJob);
+            exportJob.setStatus(ExportStatus.COMPLETED);
+            exportJob.setTotalCount(files.size());
+            exportJob.setProcessedCount(files.size());
+            exportJob.setArtifactSize(Files.size(artifact));
+            exportJob.setCompletedAt(now);
+            exportJob.setExpiresAt(new Date(now.getTime() + ttlMinutes * 60_000L));
+            exportJobRepository.save(exportJob);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Export {} failed: {}", exportId, e.getMessage());
+            try {
+                Files.deleteIfExists(partPath);
+            } catch (IOException ignored) {
+                //다음 실행 때 덮어쓴다
+            }
+            exportJob = exportJobRepository.findById(exportId).orElse(exportJob);
+            exportJob.setStatus(ExportStatus.FAILED);
+            exportJob.setErrorMessage(e.getMessage());
+            exportJobRepository.save(exportJob);
+        }
+    }
+
+    //재시작 전에 끝나지 못한 작업은 처음부터 다시 만든다
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for(ExportJob exportJob : exportJobRepository.findByStatusIn(List.of(ExportStatus.PENDING, ExportStatus.RUNNING))) {
+            exportExecutor.execute(() -> run(exportJob.getExportId()));
+        }
+    }
+
+    //Range 로 이어받는 중인 파일은 이번에는 건너뛰고, 전송이 끝난 뒤의 정리 때 지운다
+    @Scheduled(fixedDelayString = "${photoalbum.export.cleanup-interval-ms:600000}")
+    public void expireArtifacts() {
+        for(ExportJob exportJob : exportJobRepository.findByStatusAndExpiresAtBefore(ExportStatus.COMPLETED, new Date())) {
+            synchronized (activeDownloads) {
+                if(activeDownloads.containsKey(exportJob.getExportId())) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(artifactPath(exportJob.getExportId()));
+                    exportJob.setStatus(ExportStatus.EXPIRED);
+                    exportJobRepository.save(exportJob);
+                } catch (IOException e) {
+                    log.warn("Could not delete export artifact {}: {}", exportJob.getExportId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(ExportJob exportJob) {
+        return exportJob.getExpiresAt() != null && exportJob.getExpiresAt().before(new Date());
+    }
+
+    private Path artifactPath(Long exportId) {
+        return export_path.resolve(exportId + ".zip");
+    }
+
+    private static String fingerprint(List<ExportManifestEntry> manifest) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(ExportManifestEntry entry : manifest) {
+                String line = entry.getPhotoId() + "|" + entry.getFileName() + "|" + entry.getOriginalUrl() + "|" + entry.getFileSize() + "\n";
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
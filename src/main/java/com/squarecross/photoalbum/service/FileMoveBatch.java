@@ -0,0 +1,89 @@
+package com.squarecross.photoalbum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.squarecross.photoalbum.storage.PhotoStorage;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+
+//저장소의 여러 파일 이동을 병렬로 실행하고, 성공한 이동을 기록해두었다가 실패하면 거꾸로 되돌린다
+class FileMoveBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(FileMoveBatch.class);
+
+    private final PhotoStorage photoStorage;
+    private final List<Move> moves = new ArrayList<>();
+    private final Deque<Move> completed = new ConcurrentLinkedDeque<>();
+
+    FileMoveBatch(PhotoStorage photoStorage) {
+        this.photoStorage = photoStorage;
+    }
+
+    //원본이 없으면 배치 전체가 실패하는 이동. DB 는 이 파일이 새 위치에 있다고 기록하므로 빠지면 안 된다
+    void add(String fromKey, String toKey) {
+        moves.add(new Move(fromKey, toKey, false));
+    }
+
+    //원본이 없으면 건너뛰는 이동 (생성 중인 썸네일 등)
+    void addOptional(String fromKey, String toKey) {
+        moves.add(new Move(fromKey, toKey, true));
+    }
+
+    //하나라도 실패하면 이미 옮긴 파일을 되돌리고 예외를 던진다
+    void execute(Executor executor) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for(Move move : moves) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if(photoStorage.exists(move.fromKey)) {
+                        photoStorage.move(move.fromKey, move.toKey);
+                        completed.add(move);
+                    } else if(!move.optional) {
+                        throw new NoSuchFileException(move.fromKey);
+                    }
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            rollback();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("사진 파일을 옮기지 못했습니다. Error : " + cause.getMessage(), cause);
+        }
+    }
+
+    void rollback() {
+        Move move;
+        while ((move = completed.pollLast()) != null) {
+            try {
+                photoStorage.move(move.toKey, move.fromKey);
+            } catch (IOException e) {
+                log.error("Could not move {} back to {}: {}", move.toKey, move.fromKey, e.getMessage());
+            }
+        }
+    }
+
+    private static class Move {
+        private final String fromKey;
+        private final String toKey;
+        private final boolean optional;
+
+        private Move(String fromKey, String toKey, boolean optional) {
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.optional = optional;
+        }
+    }
+}
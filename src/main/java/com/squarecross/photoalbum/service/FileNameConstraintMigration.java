@@ -0,0 +1,91 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+//ddl-auto=update 는 이미 같은 (album_id, file_name) 행이 있는 DB 에 유니크 제약을 만들지 못해도 로그만 남기고 넘어간다.
+//그러면 업로드의 이름 충돌 재시도가 동작하지 않으므로, 시작할 때 제약이 없으면 겹치는 이름을 "이름 (k).확장자" 로 바꾸고 제약을 만든다.
+//PhotoRepository 를 주입받아 Hibernate 가 스키마를 갱신한 뒤, 웹 서버가 요청을 받기 전에 실행된다
+@Component
+public class FileNameConstraintMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(FileNameConstraintMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @PostConstruct
+    void migrate() {
+        if(hasConstraint()) {
+            return;
+        }
+        int renamed = renameDuplicates();
+        try {
+            jdbcTemplate.execute("alter table photo add constraint " + Photo.FILE_NAME_CONSTRAINT + " unique (album_id, file_name)");
+        } catch (RuntimeException e) {
+            if(!hasConstraint()) { //다른 인스턴스가 먼저 만들었으면 괜찮다
+                throw e;
+            }
+        }
+        log.info("Added {} after renaming {} duplicate photo file names", Photo.FILE_NAME_CONSTRAINT, renamed);
+    }
+
+    private boolean hasConstraint() {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "PHOTO" : "photo";
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                while (indexes.next()) {
+                    String indexName = indexes.getString("INDEX_NAME");
+                    if(indexName != null && indexName.toLowerCase(Locale.ROOT).contains(Photo.FILE_NAME_CONSTRAINT)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    //가장 먼저 올린 사진은 이름을 그대로 두고, 나머지는 앨범에서 비어있는 다음 이름으로 바꾼다.
+    //예전 방식으로 저장된 파일은 originalUrl 로 찾으므로 이름만 바꿔도 된다
+    private int renameDuplicates() {
+        List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(
+                "select album_id, file_name from photo where file_name is not null " +
+                        "group by album_id, file_name having count(*) > 1");
+        int renamed = 0;
+        for(Map<String, Object> duplicate : duplicates) {
+            Long albumId = ((Number) duplicate.get("album_id")).longValue();
+            String fileName = (String) duplicate.get("file_name");
+            List<Long> photoIds = jdbcTemplate.queryForList(
+                    "select photo_id from photo where album_id = ? and file_name = ? order by photo_id",
+                    Long.class, albumId, fileName);
+            Set<String> taken = new HashSet<>(photoRepository.findFileNameVariants(albumId, fileName, FileNames.variantPattern(fileName)));
+            for(Long photoId : photoIds.subList(1, photoIds.size())) {
+                String nextFileName = FileNames.nextFileName(fileName, taken);
+                jdbcTemplate.update("update photo set file_name = ? where photo_id = ?", nextFileName, photoId);
+                taken.add(nextFileName);
+                renamed++;
+            }
+        }
+        return renamed;
+    }
+}
@@ -0,0 +1,47 @@
+package com.squarecross.photoalbum.service;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+
+//같은 앨범 안에서 파일명이 겹칠 때 "파일명 (2).확장자" 형식으로 새 이름을 정한다
+public class FileNames {
+    //LIKE 패턴에 들어가는 파일명의 %, _ 를 그대로 비교하기 위한 escape 문자
+    public static final char LIKE_ESCAPE = '!';
+
+    private FileNames() {}
+
+    //"파일명 (숫자).확장자" 후보를 모두 찾는 LIKE 패턴. 접두어가 고정이라 (album_id, file_name) 인덱스를 탄다
+    public static String variantPattern(String fileName) {
+        String fileNameNoExt = StringUtils.stripFilenameExtension(fileName);
+        String ext = StringUtils.getFilenameExtension(fileName);
+        return escapeLike(fileNameNoExt) + " (%)." + escapeLike(ext);
+    }
+
+    //taken 에 없는 첫 번째 이름. 원래 이름이 비어있으면 그대로, 아니면 2부터 카운트
+    public static String nextFileName(String fileName, Collection<String> taken) {
+        if(!taken.contains(fileName)) {
+            return fileName;
+        }
+        String fileNameNoExt = StringUtils.stripFilenameExtension(fileName);
+        String ext = StringUtils.getFilenameExtension(fileName);
+        int count = 2; //파일명이 겹치는 경우, 2부터 카운트해서 새로 저장
+        String candidate;
+        do {
+            candidate = String.format("%s (%d).%s", fileNameNoExt, count, ext); //파일명, 숫자, 확장자를 합쳐준다
+            count++;
+        } while (taken.contains(candidate));
+        return candidate;
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for(char c : value.toCharArray()) {
+            if(c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.squarecross.photoalbum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+//앨범, 사진 메타데이터 조회 결과를 메모리에 들고 있는 캐시 (Caffeine, W-TinyLFU).
+//쓰기 작업에서 바뀌는 키만 골라서 지우고, 놓친 변경이 있어도 TTL 이 지나면 다시 읽는다
+@Component
+public class MetadataCache {
+
+    private static final List<String> SORTS = List.of("byName", "byDate");
+    private static final List<String> DIRECTIONS = List.of("asc", "desc");
+
+    private final Cache<Long, AlbumDto> albums;
+    private final Cache<Long, PhotoDto> photos;
+    private final Cache<String, List<PhotoDto>> photoLists;
+
+    public MetadataCache(MeterRegistry meterRegistry,
+                         @Value("${photoalbum.cache.max-albums:10000}") long maxAlbums,
+                         @Value("${photoalbum.cache.max-photos:100000}") long maxPhotos,
+                         @Value("${photoalbum.cache.max-listed-photos:200000}") long maxListedPhotos,
+                         @Value("${photoalbum.cache.ttl-seconds:600}") long ttlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.albums = Caffeine.newBuilder().maximumSize(maxAlbums).expireAfterWrite(ttl).recordStats().build();
+        this.photos = Caffeine.newBuilder().maximumSize(maxPhotos).expireAfterWrite(ttl).recordStats().build();
+        //사진 목록은 앨범마다 크기가 크게 달라서 항목 수가 아니라 목록에 든 사진 수로 제한한다
+        this.photoLists = Caffeine.newBuilder()
+                .maximumWeight(maxListedPhotos)
+                .<String, List<PhotoDto>>weigher((key, value) -> value.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, albums, "albums");
+        CaffeineCacheMetrics.monitor(meterRegistry, photos, "photos");
+        CaffeineCacheMetrics.monitor(meterRegistry, photoLists, "photoLists");
+    }
+
+    public AlbumDto getAlbum(Long albumId, Function<Long, AlbumDto> loader) {
+        return albums.get(albumId, loader);
+    }
+
+    public PhotoDto getPhoto(Long photoId, Function<Long, PhotoDto> loader) {
+        return photos.get(photoId, loader);
+    }
+
+    public List<PhotoDto> getPhotoList(Long albumId, String sort, boolean desc, Function<String, List<PhotoDto>> loader) {
+        return photoLists.get(photoListKey(albumId, sort, desc ? "desc" : "asc"),
+                key -> Collections.unmodifiableList(loader.apply(key)));
+    }
+
+    //앨범 정보(사진 수 포함)가 바뀌었을 때
+    public void evictAlbum(Long albumId) {
+        albums.invalidate(albumId);
+    }
+
+    public void evictPhoto(Long photoId) {
+        photos.invalidate(photoId);
+    }
+
+    //앨범에 사진이 추가, 삭제, 이동되었을 때. 사진 수와 모든 정렬 순서의 목록을 지운다
+    public void evictAlbumContents(Long albumId) {
+        albums.invalidate(albumId);
+        for(String sort : SORTS) {
+            for(String direction : DIRECTIONS) {
+                photoLists.invalidate(photoListKey(albumId, sort, direction));
+            }
+        }
+    }
+
+    //앨범이 삭제되면 그 앨범의 사진 캐시도 모두 지운다
+    public void evictAlbumAndPhotos(Long albumId) {
+        evictAlbumContents(albumId);
+        photos.asMap().values().removeIf(photoDto -> albumId.equals(photoDto.getAlbumId()));
+    }
+
+    private static String photoListKey(Long albumId, String sort, String direction) {
+        return albumId + ":" + sort + ":" + direction;
+    }
+}
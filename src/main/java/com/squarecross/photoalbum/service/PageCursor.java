@@ -0,0 +1,74 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+//Keyset 페이지네이션 커서. 마지막으로 내려준 행의 정렬 값과 ID를 Base64 토큰으로 감싸서 전달한다
+public class PageCursor {
+    private static final String DELIMITER = "|";
+
+    private final String sort;
+    private final String orderBy;
+    private final long id;
+    private final String value;
+
+    public PageCursor(String sort, String orderBy, long id, String value) {
+        this.sort = sort;
+        this.orderBy = orderBy;
+        this.id = id;
+        this.value = value;
+    }
+
+    public String encode() {
+        String raw = sort + DELIMITER + orderBy + DELIMITER + id + DELIMITER + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //커서는 발급 당시의 정렬 기준과 같은 요청에서만 사용할 수 있다
+    public static PageCursor decode(String token, String sort, String orderBy) {
+        String[] parts;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            parts = raw.split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.");
+        }
+        if(parts.length != 4 || !Objects.equals(parts[0], sort) || !Objects.equals(parts[1], orderBy)) {
+            throw new IllegalArgumentException("정렬 기준과 맞지 않는 커서입니다.");
+        }
+        try {
+            return new PageCursor(parts[0], parts[1], Long.parseLong(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.");
+        }
+    }
+
+    public static void checkPageSize(int size) {
+        if(size < 1 || size > Constants.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format("페이지 크기는 1 ~ %d 사이여야 합니다.", Constants.MAX_PAGE_SIZE));
+        }
+    }
+
+    public static boolean hasCursor(String token) {
+        return token != null && !token.isBlank();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getValueAsLong() {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.");
+        }
+    }
+}
@@ -3,113 +3,311 @@ package com.squarecross.photoalbum.service;
 import com.squarecross.photoalbum.Constants;
 import com.squarecross.photoalbum.domain.Album;
 import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.dto.CursorPageDto;
 import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.dto.PhotoUploadResultDto;
 import com.squarecross.photoalbum.mapper.PhotoMapper;
 import com.squarecross.photoalbum.repository.AlbumRepository;
 import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.search.SearchIndex;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import io.micrometer.core.annotation.Timed;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
-import org.imgscalr.Scalr;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
-import java.awt.image.BufferedImage;
-import java.io.File;
+import javax.persistence.PersistenceContext;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
 
 @Service
 public class PhotoService {
 
+    private static final Logger log = LoggerFactory.getLogger(PhotoService.class);
+    private static final int MAX_FILE_NAME_ATTEMPTS = 5;
+    private static final int MOVE_BATCH_SIZE = 1000;
+
     @Autowired
     private PhotoRepository photoRepository;
 
     @Autowired
     private AlbumRepository albumRepository;
 
-    private final String original_path = Constants.PATH_PREFIX + "/photos/original";
-    private final String thumb_path = Constants.PATH_PREFIX + "/photos/thumb";
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    @Qualifier("fileExecutor")
+    private ThreadPoolExecutor fileExecutor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    @Qualifier("uploadExecutor")
+    private ThreadPoolExecutor uploadExecutor;
+
+    @Timed("photoalbum.service")
     public PhotoDto getPhoto(Long photoId) {
-        Optional<Photo> res = photoRepository.findById(photoId);
+        return metadataCache.getPhoto(photoId, this::loadPhoto);
+    }
+
+    private PhotoDto loadPhoto(Long photoId) {
+        Optional<PhotoDto> res = photoRepository.findDtoById(photoId);
         if(res.isPresent()) {
-            PhotoDto photoDto = PhotoMapper.convertToDto(res.get());
-            return photoDto;
+            return res.get();
         } else {
             throw new EntityNotFoundException(String.format("사진 아이디 %d으로 조회되지 않았습니다", photoId));
         }
     }
 
+    @Timed("photoalbum.service")
     public PhotoDto savePhoto(MultipartFile file, Long albumId) {
+        Album album = findAlbum(albumId);
+        checkExtension(file);
+        String fileName = getNextFileName(file.getOriginalFilename(), albumId, Collections.emptySet());
+        return storePhoto(saveFile(file), album, file.getOriginalFilename(), fileName, new HashSet<>());
+    }
+
+    //이어받기 업로드로 다 받은 파일을 저장한다. 해시는 UploadService 가 파일 내용과 비교한 값이다
+    PhotoDto saveStagedPhoto(Long albumId, String originalFilename, Path staged, String hash, long size) {
+        Album album = findAlbum(albumId);
+        checkExtension(originalFilename);
+        String fileName = getNextFileName(originalFilename, albumId, Collections.emptySet());
+        BlobStore.StoredFile stored;
+        try {
+            stored = photoMetrics.timeDisk(PhotoMetrics.COPY, () -> blobStore.put(staged, hash, size));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the file. Error : " + e.getMessage());
+        }
+        log.info("Stored chunked upload {}: {} bytes, {}", originalFilename, size,
+                stored.isDuplicate() ? "duplicate of " + hash : hash);
+        return storePhoto(stored, album, originalFilename, fileName, new HashSet<>());
+    }
+
+    //여러 파일을 uploadExecutor 에서 동시에 저장한다. 응답 순서는 요청한 파일 순서를 유지한다
+    @Timed("photoalbum.service")
+    public List<PhotoUploadResultDto> savePhotos(MultipartFile[] files, Long albumId) {
+        Album album = findAlbum(albumId);
+        for(MultipartFile file : files) {
+            checkExtension(file);
+        }
+
+        //같은 요청 안에서 파일명이 겹쳐도 서로 다른 이름을 받도록, 이름은 순서대로 먼저 정해둔다.
+        //이름을 다시 정하는 업로드 스레드도 같이 쓰므로 동시에 써도 되는 Set 을 쓴다
+        Set<String> reserved = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<PhotoDto>> futures = new ArrayList<>();
+        for(MultipartFile file : files) {
+            String fileName = getNextFileName(file.getOriginalFilename(), albumId, reserved);
+            reserved.add(fileName);
+            futures.add(CompletableFuture.supplyAsync(() -> storePhoto(saveFile(file), album, file.getOriginalFilename(), fileName, reserved), uploadExecutor));
+        }
+
+        //한 파일이 실패해도 이미 저장된 사진은 그대로 두고, 요청 순서대로 파일마다 결과를 돌려준다
+        List<PhotoUploadResultDto> results = new ArrayList<>();
+        for(int i = 0; i < futures.size(); i++) {
+            String originalFilename = files[i].getOriginalFilename();
+            try {
+                results.add(PhotoUploadResultDto.stored(originalFilename, futures.get(i).join()));
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Could not upload {} to album {}: {}", originalFilename, albumId, cause.getMessage());
+                results.add(PhotoUploadResultDto.failed(originalFilename, cause.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private Album findAlbum(Long albumId) {
         Optional<Album> res = albumRepository.findById(albumId);
         if(res.isEmpty()) {
             throw new EntityNotFoundException("앨범이 존재하지 않습니다");
         }
-        String fileName = file.getOriginalFilename();
-        int fileSize = (int) file.getSize(); //long은 64바이트 int는 32바이트. int로 나타낼 수 있는 최대는 대략 2GB이지만 그렇게 커질 일 없으니 int 로 변환
-        fileName = getNextFileName(fileName, albumId);
-        saveFile(file, albumId, fileName); //사진 저장
-
-        Photo photo = new Photo();
-        photo.setOriginalUrl("/photos/original/" + albumId + "/" + fileName);
-        photo.setThumbUrl("/photos/thumb/" + albumId + "/" + fileName);
-        photo.setFileName(fileName);
-        photo.setFileSize(fileSize);
-        photo.setAlbum(res.get());
-        Photo createdPhoto = photoRepository.save(photo);
+        return res.get();
+    }
+
+    private void checkExtension(MultipartFile file) {
+        checkExtension(file.getOriginalFilename());
+    }
+
+    void checkExtension(String fileName) {
+        if(StringUtils.getFilenameExtension(fileName) == null) {
+            throw new IllegalArgumentException("No Extention");
+        }
+    }
+
+    //원본은 내용 해시로 한 번만 저장한다. 이미 있는 내용이면 쓰기와 썸네일 생성을 건너뛰고 참조만 늘린다.
+    //파일명은 (album_id, file_name) 유니크 제약으로 선점한다. 동시에 올린 다른 사진이 먼저 가져갔으면
+    //requestedName 으로 다시 이름을 정해서 MAX_FILE_NAME_ATTEMPTS 번까지 시도한다. 원본 참조 수는 사진 행과 같은 트랜잭션에서 늘리므로 실패하면 함께 롤백된다.
+    //reserved 는 같은 요청의 다른 파일이 받아둔 이름으로, 다시 정한 이름도 여기에 넣는다
+    private PhotoDto storePhoto(BlobStore.StoredFile stored, Album album, String requestedName, String fileName,
+                                Set<String> reserved) {
+        String hash = stored.getHash();
+        String ext = StringUtils.getFilenameExtension(fileName).toLowerCase(Locale.ROOT);
+        String thumbUrl = BlobStore.thumbUrl(hash, ext);
+        boolean thumbReady = thumbExists(thumbUrl);
+
+        Photo createdPhoto = null;
+        for(int attempt = 1; createdPhoto == null; attempt++) {
+            Photo photo = new Photo();
+            photo.setOriginalUrl(BlobStore.originalUrl(hash));
+            photo.setThumbUrl(thumbUrl);
+            photo.setFileName(fileName);
+            photo.setFileSize((int) stored.getSize()); //long은 64바이트 int는 32바이트. int로 나타낼 수 있는 최대는 대략 2GB이지만 그렇게 커질 일 없으니 int 로 변환
+            photo.setContentHash(hash);
+            photo.setThumbStatus(thumbReady ? ThumbnailStatus.READY : ThumbnailStatus.PENDING);
+            photo.setAlbum(album);
+            try {
+                //사진 행, 원본 참조 수, 앨범의 사진 수, 크기, 표지를 한 트랜잭션에서 바꾼다
+                createdPhoto = transactionTemplate.execute(status -> {
+                    Photo saved = photoRepository.save(photo);
+                    blobStore.addReference(stored);
+                    albumRepository.addPhotoStats(album.getAlbumId(), 1, saved.getFileSize());
+                    albumRepository.refreshCoverThumbUrls(album.getAlbumId());
+                    return saved;
+                });
+            } catch (DataIntegrityViolationException e) {
+                if(!isFileNameConflict(e) || attempt >= MAX_FILE_NAME_ATTEMPTS) {
+                    throw e; //앨범이 지워진 경우(FK) 같은 다른 제약 위반은 다시 시도해도 같다
+                }
+                log.debug("File name {} was taken in album {}, retrying", fileName, album.getAlbumId());
+                fileName = getNextFileName(requestedName, album.getAlbumId(), reserved);
+                reserved.add(fileName);
+            }
+        }
+        evictAlbumContentsAfterCommit(album.getAlbumId()); //새 사진이 앨범 목록, 사진 목록 캐시에 보이도록
+        if(!thumbReady) {
+            thumbnailService.enqueue(createdPhoto.getPhotoId());
+        }
         return PhotoMapper.convertToDto(createdPhoto);
+    }
 
+    //바깥 트랜잭션이 있으면 커밋된 뒤에 비운다. 커밋 전에 비우면 다른 요청이 이전 목록을 다시 캐시할 수 있다
+    private void evictAlbumContentsAfterCommit(Long albumId) {
+        afterCommit(() -> metadataCache.evictAlbumContents(albumId));
     }
 
-    private String getNextFileName(String fileName, Long albumId) {
-        String fileNameNoExt = StringUtils.stripFilenameExtension(fileName);
-        String ext = StringUtils.getFilenameExtension(fileName);
+    private void evictPhotoAfterCommit(Long photoId) {
+        afterCommit(() -> metadataCache.evictPhoto(photoId));
+    }
 
-        Optional<Photo> res = photoRepository.findByFileNameAndAlbum_AlbumId(fileName, albumId);
+    private static void afterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
-        int count = 2; //파일명이 겹치는 경우, 2부터 카운트해서 새로 저장
-        while (res.isPresent()) {
-            fileName = String.format("%s (%d).%s",fileNameNoExt, count, ext); //파일명, 숫자, 확장자를 합쳐준다
-            res = photoRepository.findByFileNameAndAlbum_AlbumId(fileName, albumId); //새로운 파일명으로 DB 조회해서 확인
-            count++;
+    //사진 행의 (album_id, file_name) 유니크 제약 위반인지. 제약 이름은 DB 마다 "photo.uk_..." 처럼 앞뒤가 붙을 수 있다
+    private static boolean isFileNameConflict(DataIntegrityViolationException e) {
+        for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if(cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                return constraintName != null
+                        && constraintName.toLowerCase(Locale.ROOT).contains(Photo.FILE_NAME_CONSTRAINT);
+            }
         }
-        return fileName;
+        return false;
     }
 
-    private void saveFile(MultipartFile file, Long AlbumId, String fileName)  {
+    //fileName 과 "fileName (k).확장자" 변형을 쿼리 한 번으로 읽고, 겹치지 않는 첫 이름을 고른다.
+    //reserved 는 같은 요청에서 이미 정해진(아직 DB에 없는) 파일명
+    private String getNextFileName(String fileName, Long albumId, Set<String> reserved) {
+        Set<String> taken = new HashSet<>(reserved);
+        taken.addAll(photoRepository.findFileNameVariants(albumId, fileName, FileNames.variantPattern(fileName)));
+        return FileNames.nextFileName(fileName, taken);
+    }
+
+    private boolean thumbExists(String thumbUrl) {
         try {
-            String filePath= AlbumId + "/" + fileName;
-            Files.copy(file.getInputStream(), Paths.get(original_path + "/" + filePath));
-
-            //정사각형이 아닌 경우 가장 긴 면은 300으로 줄이고 다른 면은 비례해서 Resize
-            BufferedImage thumbImg = Scalr.resize(ImageIO.read(file.getInputStream()), Constants.THUMB_SIZE, Constants.THUMB_SIZE);
-            //Resize 된 썸네일 이미지 저장
-            File thumbFile = new File(thumb_path + "/" + filePath);
-            String ext = StringUtils.getFilenameExtension(fileName);
-            if(ext == null) {
-                throw new IllegalArgumentException("No Extention");
-            }
-            ImageIO.write(thumbImg, ext, thumbFile);
+            return photoStorage.exists(thumbUrl);
+        } catch (IOException e) {
+            return false; //확인할 수 없으면 다시 만든다
+        }
+    }
+
+    //업로드 스트림은 해시를 계산하면서 한 번만 복사하고, 썸네일은 저장된 원본에서 디코딩한다
+    private BlobStore.StoredFile saveFile(MultipartFile file)  {
+        try (InputStream in = file.getInputStream()) {
+            BlobStore.StoredFile stored = photoMetrics.timeDisk(PhotoMetrics.COPY, () -> blobStore.put(in));
+            photoMetrics.bytesIn("upload", stored.getSize());
+            log.info("Stored original {}: {} bytes, {}", file.getOriginalFilename(), stored.getSize(),
+                    stored.isDuplicate() ? "duplicate of " + stored.getHash() : stored.getHash());
+            return stored;
         } catch (IOException e) {
             throw new RuntimeException("Could not store the file. Error : " + e.getMessage());
         }
 
     }
 
+    @Timed("photoalbum.service")
+    @Transactional
     public void deletePhotos(Long photoId, Long albumId) throws IOException {
             Optional<Photo> photo = this.photoRepository.findById(photoId);
 
             if(photo.isPresent()) {
                 Photo deletePhoto = photo.get();
+                Long ownerId = deletePhoto.getAlbum().getAlbumId();
                 this.photoRepository.deleteById(photoId);
-                this.deletePhotoFiles(deletePhoto, albumId);
+                this.albumRepository.addPhotoStats(ownerId, -1, -deletePhoto.getFileSize());
+                this.albumRepository.refreshCoverThumbUrls(ownerId);
+                evictPhotoAfterCommit(photoId); //커밋 전에 비우면 다른 요청이 지워지기 전의 사진을 다시 캐시할 수 있다
+                evictAlbumContentsAfterCommit(ownerId);
+                if(deletePhoto.getContentHash() != null) {
+                    blobStore.release(deletePhoto.getContentHash()); //파일은 참조가 0 이 되면 BlobStore 가 지운다
+                } else {
+                    this.deletePhotoFiles(deletePhoto, albumId);
+                }
             } else {
                 throw new NoSuchElementException(String.format("Photo ID '%d' 가 존재하지 않습니다.", photoId));
             }
@@ -117,99 +315,241 @@ public class PhotoService {
 
     private void deletePhotoFiles(Photo deletePhoto, Long albumId) throws IOException{
         String filePath = albumId + "/" + deletePhoto.getFileName();
-        Files.deleteIfExists(Paths.get(original_path  + "/" + filePath));
-        Files.deleteIfExists(Paths.get(thumb_path + "/" + filePath));
+        photoMetrics.timeDisk(PhotoMetrics.DELETE, () -> {
+            photoStorage.delete("/photos/original/" + filePath);
+            return photoStorage.delete("/photos/thumb/" + filePath);
+        });
     }
 
-    public File getImageFile(Long photoId) {
-        Optional<Photo> res = photoRepository.findById(photoId);
-        if(res.isEmpty()) {
-            throw new EntityNotFoundException(String.format("사진을 ID %d를 찾을 수 없습니다", photoId));
-        }
-        return new File(Constants.PATH_PREFIX + res.get().getOriginalUrl());
+    //썸네일이 아직 준비되지 않았으면 원본을 대신 내려준다
+    @Timed("photoalbum.service")
+    public PhotoFile getPhotoFile(Long photoId, boolean thumb) {
+        PhotoDto photoDto = getPhoto(photoId);
+        String url = thumb ? photoDto.getThumbUrl() : photoDto.getOriginalUrl(); //PhotoDto 의 thumbUrl 은 이미 원본으로 대체되어 있다
+        return new PhotoFile(photoDto.getFileName(), url);
     }
 
+    //요청한 사진을 쿼리 한 번으로 조회하고, 요청 순서대로 돌려준다
+    @Timed("photoalbum.service")
+    public List<PhotoFile> getPhotoFileList(Long[] photoIds) {
+        Map<Long, Photo> photos = new HashMap<>();
+        for(Photo photo : photoRepository.findAllById(Arrays.asList(photoIds))) {
+            photos.put(photo.getPhotoId(), photo);
+        }
 
-    public List<File> getImageFileList(Long[] photoIds) {
-        List<File> files = new ArrayList<>();
-
+        List<PhotoFile> files = new ArrayList<>();
         for(Long photoId : photoIds) {
-            Optional<Photo> res = photoRepository.findById(photoId);
-            if(res.isEmpty()) {
+            Photo photo = photos.get(photoId);
+            if(photo == null) {
                 throw new EntityNotFoundException(String.format("사진을 ID %d를 찾을 수 없습니다", photoId));
             }
-            files.add(new File(Constants.PATH_PREFIX + res.get().getOriginalUrl()));
+            files.add(new PhotoFile(photo.getFileName(), photo.getOriginalUrl()));
         }
 
         return files;
     }
 
+    @Timed("photoalbum.service")
     public List<PhotoDto> getPhotoList(Long albumId, String sort, String orderBy) {
-        List<Photo> photos;
+        checkPhotoListSort(sort);
+        boolean desc = Objects.equals(orderBy, "desc");
+        return metadataCache.getPhotoList(albumId, sort, desc, key -> loadPhotoList(albumId, sort, desc));
+    }
 
-      //  List<Photo> photos = photoRepository.findById_albumId(res.get().getAlbumId()); //정렬 기본
+    private List<PhotoDto> loadPhotoList(Long albumId, String sort, boolean desc) {
+        return photoRepository.findDtosByAlbumId(albumId, photoListSort(sort, desc));
+    }
+
+    //사진이 아주 많은 앨범은 목록 전체를 만들지 않고 getPhotoPage 의 keyset 쿼리로 MAX_PAGE_SIZE 씩 읽어서 넘긴다.
+    //배치마다 짧은 트랜잭션으로 읽고, 트랜잭션이 끝난 뒤에 넘기므로 느린 클라이언트가 받는 동안 DB 커넥션을 잡지 않는다
+    @Timed("photoalbum.service")
+    public void streamPhotoList(Long albumId, String sort, String orderBy, PhotoSink sink) throws IOException {
+        String cursor = null;
+        do {
+            String after = cursor;
+            CursorPageDto<PhotoDto> page = transactionTemplate.execute(
+                    status -> getPhotoPage(albumId, sort, orderBy, after, Constants.MAX_PAGE_SIZE));
+            for(PhotoDto photoDto : page.getItems()) {
+                sink.accept(photoDto);
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    //같은 값이면 photoId 순으로 정렬해서 순서가 항상 같도록 한다
+    private Sort photoListSort(String sort, boolean desc) {
+        Sort.Direction direction = desc ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, Objects.equals(sort, "byName") ? "fileName" : "uploadedAt", "photoId");
+    }
+
+    //streamPhotoList 가 사진 한 건마다 호출한다
+    public interface PhotoSink {
+        void accept(PhotoDto photoDto) throws IOException;
+    }
+
+    public void checkPhotoListSort(String sort) {
+        if(!Objects.equals(sort, "byName") && !Objects.equals(sort, "byDate")) {
+            throw new IllegalArgumentException("알 수 없는 정렬 기준입니다.");
+        }
+    }
+
+    @Timed("photoalbum.service")
+    public CursorPageDto<PhotoDto> getPhotoPage(Long albumId, String sort, String orderBy, String cursor, int size) {
+        PageCursor.checkPageSize(size);
+        boolean desc = Objects.equals(orderBy, "desc");
+        String direction = desc ? "desc" : "asc";
+        PageCursor after = PageCursor.hasCursor(cursor) ? PageCursor.decode(cursor, sort, direction) : null;
+        Pageable limit = PageRequest.of(0, size + 1); //다음 페이지 존재 여부 확인용으로 1건 더 조회
+        List<PhotoDto> photos;
 
         if(Objects.equals(sort, "byName")) {
-            if(Objects.equals(orderBy, "desc")) {
-                photos = photoRepository.findAllByAlbum_AlbumIdOrderByFileNameDesc(albumId);
-            }else {
-                photos = photoRepository.findAllByAlbum_AlbumIdOrderByFileNameAsc(albumId);
+            if(after == null) {
+                photos = photoRepository.findDtosByAlbumId(albumId,
+                        PageRequest.of(0, size + 1, Sort.by(desc ? Sort.Direction.DESC : Sort.Direction.ASC, "fileName", "photoId")));
+            } else if(desc) {
+                photos = photoRepository.findPageByFileNameDesc(albumId, after.getValue(), after.getId(), limit);
+            } else {
+                photos = photoRepository.findPageByFileNameAsc(albumId, after.getValue(), after.getId(), limit);
             }
         } else if (Objects.equals(sort, "byDate")) {
-            if(Objects.equals(orderBy, "desc")) {
-                photos = photoRepository.findAllByAlbum_AlbumIdOrderByUploadedAtDesc(albumId);
-            }else {
-                photos = photoRepository.findAllByAlbum_AlbumIdOrderByUploadedAtAsc(albumId);
+            if(after == null) {
+                photos = photoRepository.findDtosByAlbumId(albumId,
+                        PageRequest.of(0, size + 1, Sort.by(desc ? Sort.Direction.DESC : Sort.Direction.ASC, "uploadedAt", "photoId")));
+            } else if(desc) {
+                photos = photoRepository.findPageByUploadedAtDesc(albumId, new Date(after.getValueAsLong()), after.getId(), limit);
+            } else {
+                photos = photoRepository.findPageByUploadedAtAsc(albumId, new Date(after.getValueAsLong()), after.getId(), limit);
             }
         } else {
             throw new IllegalArgumentException("알 수 없는 정렬 기준입니다.");
         }
 
-        List<PhotoDto> photoDtos = PhotoMapper.convertToDtoList(photos);
+        String nextCursor = null;
+        if(photos.size() > size) {
+            photos = photos.subList(0, size);
+            PhotoDto last = photos.get(size - 1);
+            String value = Objects.equals(sort, "byName") ? last.getFileName() : String.valueOf(last.getUploadedAt().getTime());
+            nextCursor = new PageCursor(sort, direction, last.getPhotoId(), value).encode();
+        }
 
-        return photoDtos;
+        return new CursorPageDto<>(photos, nextCursor);
     }
 
+    @Timed("photoalbum.service")
+    @Transactional
     public PhotoDto movePhoto(Long fromAlbumId, Long toAlbumId, Long photoId) {
+        return movePhotos(fromAlbumId, toAlbumId, new Long[]{photoId}).get(0);
+    }
 
-        Optional<Photo> res = photoRepository.findById(photoId);
-
-        if(res.isEmpty()) {
-            throw new EntityNotFoundException(String.format("사진을 ID %d를 찾을 수 없습니다.", photoId));
+    //사진 조회, 검증은 쿼리 한 번, 앨범과 URL 변경은 bulk UPDATE 로 처리하고 파일 이동은 병렬로 실행한다.
+    //파일 이동이나 커밋이 실패하면 옮긴 파일을 되돌리고 DB 도 롤백된다
+    @Timed("photoalbum.service")
+    @Transactional
+    public List<PhotoDto> movePhotos(Long fromAlbumId, Long toAlbumId, Long[] photoIds) {
+        Optional<Album> album = albumRepository.findById(toAlbumId);
+        if(album.isEmpty()) {
+            throw new EntityNotFoundException(String.format("앨범 아이디 %d으로 조회되지 않았습니다", toAlbumId));
         }
+        Album toAlbum = album.get();
 
-        if(!(res.get().getAlbum().getAlbumId() == fromAlbumId)) {
-            throw new EntityNotFoundException(String.format("변경 전 앨범 ID와 기존 ID가 다릅니다."));
+        Map<Long, Photo> found = new HashMap<>();
+        for(Photo photo : photoRepository.findAllById(Arrays.asList(photoIds))) {
+            found.put(photo.getPhotoId(), photo);
+        }
+        List<Photo> photos = new ArrayList<>();
+        for(Long photoId : new LinkedHashSet<>(Arrays.asList(photoIds))) {
+            Photo photo = found.get(photoId);
+            if(photo == null) {
+                throw new EntityNotFoundException(String.format("사진을 ID %d를 찾을 수 없습니다.", photoId));
+            }
+            if(!Objects.equals(photo.getAlbum().getAlbumId(), fromAlbumId)) {
+                throw new EntityNotFoundException(String.format("변경 전 앨범 ID와 기존 ID가 다릅니다."));
+            }
+            photos.add(photo);
+        }
+        if(Objects.equals(fromAlbumId, toAlbumId)) {
+            return PhotoMapper.convertToDtoList(photos);
         }
 
-        String updatedOriUrl = toAlbumId + "/" + res.get().getFileName();
-        String updatedThumbUrl = toAlbumId + "/" + res.get().getFileName();
-
-        Path oriFile = Paths.get(Constants.PATH_PREFIX + res.get().getOriginalUrl());
-        Path newOriFile = Paths.get(original_path + "/" + updatedOriUrl);
-
-        Path thumbFile = Paths.get(Constants.PATH_PREFIX + res.get().getThumbUrl());
-        Path newThumbFile = Paths.get(thumb_path + "/" + updatedThumbUrl);
-
-        try {
-            Path newOriFilePath = Files.move(oriFile, newOriFile, StandardCopyOption.REPLACE_EXISTING);
-            Path newThumbFilePath = Files.move(thumbFile, newThumbFile, StandardCopyOption.REPLACE_EXISTING);
-
-            System.out.println(newOriFilePath);
-            System.out.println(newThumbFilePath);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        //옮길 앨범에 같은 파일명이 있으면 덮어쓰지 않고 새 이름을 받는다
+        Set<String> taken = new HashSet<>();
+        List<String> fileNames = photos.stream().map(Photo::getFileName).collect(Collectors.toList());
+        for(int from = 0; from < fileNames.size(); from += MOVE_BATCH_SIZE) {
+            taken.addAll(photoRepository.findFileNamesIn(toAlbumId, fileNames.subList(from, Math.min(from + MOVE_BATCH_SIZE, fileNames.size()))));
         }
 
-        Optional<Album> album = albumRepository.findById(toAlbumId);
+        FileMoveBatch fileMoves = new FileMoveBatch(photoStorage);
+        List<Long> sameNameIds = new ArrayList<>();
+        List<Long> sameNameStoredIds = new ArrayList<>();
+        Set<String> assigned = new HashSet<>(fileNames);
+        for(Photo photo : photos) {
+            String fileName = photo.getFileName();
+            if(taken.contains(fileName)) {
+                fileName = getNextFileName(fileName, toAlbumId, assigned);
+                assigned.add(fileName);
+            }
+            //내용 주소로 저장된 사진은 파일 위치가 앨범과 무관하므로 DB 만 바꾼다
+            boolean stored = photo.getContentHash() != null;
+            if(!stored) {
+                fileMoves.add(photo.getOriginalUrl(), "/photos/original/" + toAlbumId + "/" + fileName);
+                fileMoves.addOptional(photo.getThumbUrl(), "/photos/thumb/" + toAlbumId + "/" + fileName);
+            }
 
-        Photo photo = res.get();
-        photo.setAlbum(album.get());
-        photo.setOriginalUrl("/photos/original/" + updatedOriUrl);
-        photo.setThumbUrl("/photos/thumb/" + updatedThumbUrl);
+            if(fileName.equals(photo.getFileName())) {
+                (stored ? sameNameStoredIds : sameNameIds).add(photo.getPhotoId());
+            } else {
+                photo.setFileName(fileName); //이름이 바뀌는 사진은 더티 체킹으로 개별 UPDATE
+            }
+            photo.setAlbum(toAlbum);
+            if(!stored) {
+                photo.setOriginalUrl("/photos/original/" + toAlbumId + "/" + fileName);
+                photo.setThumbUrl("/photos/thumb/" + toAlbumId + "/" + fileName);
+            }
+        }
+        //이름이 그대로인 사진은 변경 내용을 bulk UPDATE 로 반영하고, 영속성 컨텍스트에서 떼어낸다
+        for(Long photoId : sameNameIds) {
+            entityManager.detach(found.get(photoId));
+        }
+        for(Long photoId : sameNameStoredIds) {
+            entityManager.detach(found.get(photoId));
+        }
+        photoRepository.flush();
+        for(int from = 0; from < sameNameIds.size(); from += MOVE_BATCH_SIZE) {
+            photoRepository.moveToAlbum(toAlbum, String.valueOf(toAlbumId), sameNameIds.subList(from, Math.min(from + MOVE_BATCH_SIZE, sameNameIds.size())));
+        }
+        for(int from = 0; from < sameNameStoredIds.size(); from += MOVE_BATCH_SIZE) {
+            photoRepository.moveStoredToAlbum(toAlbum, sameNameStoredIds.subList(from, Math.min(from + MOVE_BATCH_SIZE, sameNameStoredIds.size())));
+        }
 
-        Photo updatedPhoto = this.photoRepository.save(photo);
+        //앨범의 사진 수, 크기는 옮긴 만큼 더하고 빼고, 표지는 두 앨범 모두 다시 계산한다
+        long movedBytes = photos.stream().mapToLong(Photo::getFileSize).sum();
+        albumRepository.addPhotoStats(fromAlbumId, -photos.size(), -movedBytes);
+        albumRepository.addPhotoStats(toAlbumId, photos.size(), movedBytes);
+        albumRepository.refreshCoverThumbUrls(fromAlbumId);
+        albumRepository.refreshCoverThumbUrls(toAlbumId);
+
+        long moveStartedAt = System.nanoTime();
+        fileMoves.execute(fileExecutor);
+        photoMetrics.recordDisk(PhotoMetrics.MOVE, System.nanoTime() - moveStartedAt);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_ROLLED_BACK) {
+                    fileMoves.rollback(); //커밋에 실패하면 파일도 원래 자리로 되돌린다
+                } else if(status == STATUS_COMMITTED) {
+                    //bulk UPDATE 로 옮긴 사진은 엔티티 콜백이 불리지 않으므로 검색 색인에 직접 반영한다
+                    for(Photo photo : photos) {
+                        searchIndex.put(SearchIndex.Type.PHOTO, photo.getPhotoId(), toAlbumId, photo.getFileName());
+                    }
+                }
+                for(Photo photo : photos) {
+                    metadataCache.evictPhoto(photo.getPhotoId());
+                }
+                metadataCache.evictAlbumContents(fromAlbumId);
+                metadataCache.evictAlbumContents(toAlbumId);
+            }
+        });
 
-        return PhotoMapper.convertToDto(updatedPhoto);
+        return PhotoMapper.convertToDtoList(photos);
     }
 }
@@ -0,0 +1,155 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//리사이즈한 사진을 디스크에 보관하는 캐시. 전체 크기가 maxBytes 를 넘으면 가장 오래 안 쓴 파일부터 지운다.
+//인덱스는 메모리에만 있고, 시작할 때 디스크를 훑어 마지막 수정 시각 순으로 다시 만든다.
+//touch 나 put 이 경로를 돌려준 뒤 응답이 파일을 열기 전에 지워지지 않도록, evictGraceMs 안에 쓴 파일은 크기를 넘어도 지우지 않는다
+@Component
+public class RenditionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionCache.class);
+
+    private final Path root;
+    private final long maxBytes;
+    private final long graceNanos;
+
+    //접근 순서로 정렬되는 파일 -> 크기, 마지막 사용 시각 인덱스
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    @Autowired
+    public RenditionCache(@Value("${photoalbum.rendition.cache-max-bytes:1073741824}") long maxBytes,
+                          @Value("${photoalbum.rendition.evict-grace-ms:60000}") long evictGraceMs) {
+        this(Paths.get(Constants.PATH_PREFIX + "/renditions"), maxBytes, evictGraceMs);
+    }
+
+    RenditionCache(Path root, long maxBytes, long evictGraceMs) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        this.graceNanos = TimeUnit.MILLISECONDS.toNanos(evictGraceMs);
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> found = new ArrayList<>();
+        for(Path file : files) {
+            if(file.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(file); //쓰다 만 파일
+                continue;
+            }
+            found.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+        found.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        long loadedAt = System.nanoTime() - graceNanos; //시작할 때 있던 파일은 바로 지울 수 있다
+        synchronized (this) {
+            for(Map.Entry<Path, BasicFileAttributes> entry : found) {
+                entries.put(entry.getKey(), new Entry(entry.getValue().size(), loadedAt));
+                totalBytes += entry.getValue().size();
+            }
+        }
+        evict();
+        log.info("Loaded {} renditions ({} bytes)", entries.size(), totalBytes);
+    }
+
+    public Path resolve(String key) {
+        return root.resolve(key);
+    }
+
+    //캐시에 있으면 최근 사용으로 표시하고 true
+    public boolean touch(Path path) {
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if(entry != null) {
+                entry.touchedAt = System.nanoTime();
+                return true;
+            }
+        }
+        //다른 인스턴스가 만들어 둔 파일이거나 인덱스에서 빠진 파일
+        if(Files.isRegularFile(path)) {
+            try {
+                add(path, Files.size(path));
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    //임시 파일을 캐시 위치로 옮기고 인덱스에 등록한다
+    public void put(Path temp, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        add(path, Files.size(path));
+    }
+
+    public Path newTempFile(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    }
+
+    private void add(Path path, long size) {
+        synchronized (this) {
+            Entry previous = entries.put(path, new Entry(size, System.nanoTime()));
+            totalBytes += size - (previous == null ? 0 : previous.size);
+        }
+        evict();
+    }
+
+    //인덱스에서 빼는 것과 파일을 지우는 것을 같은 잠금 안에서 해야, touch 가 디스크에서 다시 찾아 돌려준 파일을 지우지 않는다
+    private synchronized void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Path, Entry> eldest = it.next();
+            if(now - eldest.getValue().touchedAt < graceNanos) {
+                break; //뒤에 있는 파일은 모두 더 최근에 쓰였다. 다음 put 에서 다시 줄인다
+            }
+            totalBytes -= eldest.getValue().size;
+            it.remove();
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            } catch (IOException e) {
+                log.warn("Could not evict rendition {}: {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private long touchedAt; //System.nanoTime
+
+        Entry(long size, long touchedAt) {
+            this.size = size;
+            this.touchedAt = touchedAt;
+        }
+    }
+}
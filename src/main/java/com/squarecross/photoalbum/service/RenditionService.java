@@ -0,0 +1,187 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.image.DecodedImage;
+import com.squarecross.photoalbum.image.ImageDecoder;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import com.squarecross.photoalbum.storage.StorageObject;
+import org.imgscalr.Scalr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+//저장소의 원본에서 요청한 크기의 사진(rendition)을 만들어 로컬 RenditionCache 에 저장하고 돌려준다.
+//같은 rendition 을 동시에 요청하면 처음 요청한 스레드만 리사이즈하고 나머지는 그 결과를 기다린다
+@Service
+public class RenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionService.class);
+    private static final List<String> FITS = List.of("contain", "cover");
+    private static final List<String> FORMATS = List.of("jpg", "png");
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private RenditionCache renditionCache;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    private final ConcurrentHashMap<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public PhotoFile render(Long photoId, Integer width, Integer height, String fit, String format) throws IOException {
+        int w = checkSize(width);
+        int h = checkSize(height);
+        if(w == 0 && h == 0) {
+            throw new IllegalArgumentException("w, h 중 하나는 지정해야 합니다.");
+        }
+        String fitMode = fit == null ? "contain" : fit.toLowerCase(Locale.ROOT);
+        if(!FITS.contains(fitMode)) {
+            throw new IllegalArgumentException(String.format("지원하지 않는 fit 입니다: %s", fit));
+        }
+
+        PhotoFile original = photoService.getPhotoFile(photoId, false);
+        String ext = format != null ? format.toLowerCase(Locale.ROOT) : outputFormatFor(original.getFileName());
+        if(ext.equals("jpeg")) {
+            ext = "jpg";
+        }
+        if(!FORMATS.contains(ext)) {
+            throw new IllegalArgumentException(String.format("지원하지 않는 format 입니다: %s", format));
+        }
+
+        StorageObject object;
+        try {
+            object = photoStorage.stat(original.getKey());
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException(String.format("파일 %s 이 존재하지 않습니다.", original.getFileName()));
+        }
+        //원본이 바뀌면 키도 바뀌어서 이전 rendition 은 쓰이지 않고 LRU 로 밀려난다
+        String version = Long.toHexString(object.getSize()) + "-" + Long.toHexString(object.getLastModified());
+        Path path = renditionCache.resolve(photoId + "/" + w + "x" + h + "-" + fitMode + "-" + version + "." + ext);
+
+        String stem = StringUtils.stripFilenameExtension(original.getFileName());
+        String fileName = stem + "_" + w + "x" + h + "." + ext;
+        if(renditionCache.touch(path)) {
+            return new PhotoFile(fileName, path);
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(path, created);
+        if(running != null) {
+            return new PhotoFile(fileName, await(running));
+        }
+        try {
+            if(!renditionCache.touch(path)) { //touch 와 putIfAbsent 사이에 앞선 요청이 끝났을 수 있다
+                create(original.getKey(), path, w, h, fitMode.equals("cover"), ext);
+            }
+            created.complete(path);
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(path, created);
+        }
+        return new PhotoFile(fileName, path);
+    }
+
+    private void create(String sourceKey, Path path, int w, int h, boolean cover, String ext) throws IOException {
+        DecodedImage decoded = photoMetrics.timeDisk(PhotoMetrics.DECODE, () -> {
+            try (InputStream in = photoStorage.open(sourceKey)) {
+                return ImageDecoder.decode(in, w, h, cover);
+            }
+        });
+        double scale = ImageDecoder.scaleFor(decoded.getSourceWidth(), decoded.getSourceHeight(), w, h, cover);
+        int targetWidth = Math.max(1, (int) Math.round(decoded.getSourceWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(decoded.getSourceHeight() * scale));
+
+        long resizeStartedAt = System.nanoTime();
+        BufferedImage image = decoded.getImage();
+        if(image.getWidth() != targetWidth || image.getHeight() != targetHeight) {
+            image = Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, targetWidth, targetHeight);
+        }
+        if(cover) {
+            //상자를 덮도록 줄인 뒤 가운데를 잘라낸다
+            int cropWidth = w > 0 ? Math.min(w, image.getWidth()) : image.getWidth();
+            int cropHeight = h > 0 ? Math.min(h, image.getHeight()) : image.getHeight();
+            image = Scalr.crop(image, (image.getWidth() - cropWidth) / 2, (image.getHeight() - cropHeight) / 2, cropWidth, cropHeight);
+        }
+        if(ext.equals("jpg") && image.getColorModel().hasAlpha()) {
+            image = flatten(image);
+        }
+        photoMetrics.recordDisk(PhotoMetrics.RESIZE, System.nanoTime() - resizeStartedAt);
+        BufferedImage rendered = image;
+
+        Path temp = renditionCache.newTempFile(path);
+        try {
+            if(!photoMetrics.timeDisk(PhotoMetrics.ENCODE, () -> ImageIO.write(rendered, ext, temp.toFile()))) {
+                throw new IOException(String.format("%s 형식으로 저장할 수 없습니다.", ext));
+            }
+            renditionCache.put(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("Rendered {} from {}x{} source, subsampling {}", path.getFileName(),
+                decoded.getSourceWidth(), decoded.getSourceHeight(), decoded.getSubsampling());
+    }
+
+    private Path await(CompletableFuture<Path> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    //JPEG 은 투명도를 지원하지 않으므로 흰 배경 위에 그린다
+    private BufferedImage flatten(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    private String outputFormatFor(String fileName) {
+        String ext = StringUtils.getFilenameExtension(fileName);
+        return ext != null && ext.equalsIgnoreCase("png") ? "png" : "jpg";
+    }
+
+    private int checkSize(Integer size) {
+        if(size == null) {
+            return 0;
+        }
+        if(size <= 0 || size > Constants.MAX_RENDITION_SIZE) {
+            throw new IllegalArgumentException(String.format("크기는 1 ~ %d 사이여야 합니다.", Constants.MAX_RENDITION_SIZE));
+        }
+        return size;
+    }
+}
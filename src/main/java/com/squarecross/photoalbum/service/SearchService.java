@@ -0,0 +1,129 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.dto.CursorPageDto;
+import com.squarecross.photoalbum.dto.SearchResultDto;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.repository.SearchEntry;
+import com.squarecross.photoalbum.search.SearchIndex;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiFunction;
+
+//앨범명, 사진 파일명 검색과 자동완성. DB 대신 SearchIndex 에서 찾는다
+@Service
+public class SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final String CURSOR_SORT = "search";
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    //점수순 결과를 size 개씩 나눠서 돌려준다. 커서에는 다음 시작 위치와 검색어가 들어있다
+    @Timed("photoalbum.service")
+    public CursorPageDto<SearchResultDto> search(String keyword, String type, String cursor, int size) {
+        if(keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("검색어가 입력되지 않았습니다.");
+        }
+        PageCursor.checkPageSize(size);
+        String typeName = typeName(type);
+        int offset = 0;
+        if(PageCursor.hasCursor(cursor)) {
+            PageCursor after = PageCursor.decode(cursor, CURSOR_SORT, typeName);
+            if(!after.getValue().equals(keyword)) {
+                throw new IllegalArgumentException("검색어와 맞지 않는 커서입니다.");
+            }
+            offset = (int) after.getId();
+        }
+
+        List<SearchIndex.Hit> hits = searchIndex.search(keyword, typeOf(typeName), offset, size + 1); //다음 페이지 존재 여부 확인용으로 1건 더 조회
+        String nextCursor = null;
+        if(hits.size() > size) {
+            hits = hits.subList(0, size);
+            nextCursor = new PageCursor(CURSOR_SORT, typeName, offset + size, keyword).encode();
+        }
+
+        List<SearchResultDto> results = new ArrayList<>();
+        for(SearchIndex.Hit hit : hits) {
+            SearchIndex.Entry entry = hit.getEntry();
+            SearchResultDto result = new SearchResultDto();
+            result.setType(entry.getType().name().toLowerCase(Locale.ROOT));
+            result.setId(entry.getId());
+            result.setAlbumId(entry.getType() == SearchIndex.Type.ALBUM ? entry.getId() : entry.getAlbumId());
+            result.setName(entry.getName());
+            result.setScore(hit.getScore());
+            results.add(result);
+        }
+        return new CursorPageDto<>(results, nextCursor);
+    }
+
+    @Timed("photoalbum.service")
+    public List<String> autocomplete(String prefix, String type, int size) {
+        if(size < 1 || size > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException(String.format("자동완성 개수는 1 ~ %d 사이여야 합니다.", MAX_SUGGESTIONS));
+        }
+        return searchIndex.suggest(prefix, typeOf(typeName(type)), size);
+    }
+
+    //시작할 때 DB 의 앨범, 사진 이름을 ID 순으로 나눠 읽어서 색인을 채운다. 그 사이의 변경은 엔티티 콜백이 반영한다
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        Thread rebuild = new Thread(() -> {
+            long startedAt = System.nanoTime();
+            int albums = load(SearchIndex.Type.ALBUM, albumRepository::findSearchEntries);
+            int photos = load(SearchIndex.Type.PHOTO, photoRepository::findSearchEntries);
+            searchIndex.markReady();
+            log.info("Search index built: {} albums, {} photos in {} ms", albums, photos,
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        }, "search-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    private int load(SearchIndex.Type type, BiFunction<Long, PageRequest, List<SearchEntry>> findAfter) {
+        int loaded = 0;
+        long afterId = 0L;
+        List<SearchEntry> entries;
+        do {
+            entries = findAfter.apply(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            for(SearchEntry entry : entries) {
+                searchIndex.put(type, entry.getId(), entry.getAlbumId(), entry.getName());
+                afterId = entry.getId();
+            }
+            loaded += entries.size();
+        } while (entries.size() == REBUILD_BATCH_SIZE);
+        return loaded;
+    }
+
+    private static String typeName(String type) {
+        String typeName = type == null || type.isBlank() ? "all" : type.toLowerCase(Locale.ROOT);
+        if(!typeName.equals("all") && !typeName.equals("album") && !typeName.equals("photo")) {
+            throw new IllegalArgumentException(String.format("알 수 없는 검색 대상입니다: %s", type));
+        }
+        return typeName;
+    }
+
+    //all 이면 null
+    private static SearchIndex.Type typeOf(String typeName) {
+        return typeName.equals("all") ? null : SearchIndex.Type.valueOf(typeName.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,156 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.image.DecodedImage;
+import com.squarecross.photoalbum.image.ImageDecoder;
+import com.squarecross.photoalbum.image.ThumbnailEngine;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
+
+//업로드 요청 스레드 밖에서 썸네일을 만드는 워커
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+    private static final int RESCAN_BATCH_SIZE = 500;
+    private static final int STATS_LOG_INTERVAL = 100;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private ThumbnailEngine thumbnailEngine;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Autowired
+    @Qualifier("thumbnailExecutor")
+    private ThreadPoolExecutor thumbnailExecutor;
+
+    //트랜잭션 안에서 호출되면 커밋 이후에 작업을 넣어서, 워커가 아직 커밋되지 않은 사진을 읽지 않게 한다
+    public void enqueue(Long photoId) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    thumbnailExecutor.execute(() -> generate(photoId));
+                }
+            });
+        } else {
+            thumbnailExecutor.execute(() -> generate(photoId));
+        }
+    }
+
+    void generate(Long photoId) {
+        Optional<Photo> res = photoRepository.findById(photoId);
+        if(res.isEmpty() || res.get().getThumbStatus() != ThumbnailStatus.PENDING) {
+            return; //삭제되었거나 이미 처리된 사진
+        }
+        Photo photo = res.get();
+        try {
+            //같은 내용의 사진이 이미 썸네일을 만들었으면 리사이즈하지 않는다
+            if(photo.getContentHash() == null || !photoStorage.exists(photo.getThumbUrl())) {
+                writeThumbnail(photo);
+            }
+            if(photoRepository.updateThumbStatus(photoId, ThumbnailStatus.READY) == 0) {
+                if(photo.getContentHash() == null) {
+                    //작업 중에 사진이 삭제된 경우 만들어둔 썸네일도 지운다. 공유하는 썸네일은 BlobStore 가 지운다
+                    photoStorage.delete(photo.getThumbUrl());
+                }
+            } else {
+                albumRepository.refreshCoverThumbUrls(photo.getAlbum().getAlbumId()); //표지가 원본 대신 썸네일을 가리키도록
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Thumbnail generation failed for photo {}: {}", photoId, e.getMessage());
+            photoRepository.updateThumbStatus(photoId, ThumbnailStatus.FAILED);
+        }
+        //썸네일 URL 이 원본 대신 썸네일로 바뀌었으므로 캐시된 사진 정보를 지운다
+        metadataCache.evictPhoto(photoId);
+        metadataCache.evictAlbumContents(photo.getAlbum().getAlbumId());
+    }
+
+    private void writeThumbnail(Photo photo) throws IOException {
+        //저장소의 원본에서 썸네일 크기에 맞게 subsampling 해서 한 번만 디코딩
+        DecodedImage decoded = photoMetrics.timeDisk(PhotoMetrics.DECODE, () -> {
+            try (InputStream in = photoStorage.open(photo.getOriginalUrl())) {
+                return ImageDecoder.decode(in, Constants.THUMB_SIZE);
+            }
+        });
+        log.info("Decoded photo {}: {}x{} source, subsampling {}, {} bytes decode buffer", photo.getPhotoId(),
+                decoded.getSourceWidth(), decoded.getSourceHeight(), decoded.getSubsampling(), decoded.getDecodedBytes());
+        //정사각형이 아닌 경우 가장 긴 면은 300으로 줄이고 다른 면은 비례해서 Resize
+        long resizeStartedAt = System.nanoTime();
+        BufferedImage thumbImg = thumbnailEngine.resize(decoded.getImage(), Constants.THUMB_SIZE);
+        photoMetrics.recordDisk(PhotoMetrics.RESIZE, System.nanoTime() - resizeStartedAt);
+        long count = thumbnailEngine.getCount(thumbnailEngine.getMode());
+        if(count % STATS_LOG_INTERVAL == 0) {
+            log.info("Thumbnail engine {}: {} thumbnails, {} thumbnails/s per core", thumbnailEngine.getMode(), count,
+                    String.format("%.1f", thumbnailEngine.getThroughputPerCore(thumbnailEngine.getMode())));
+        }
+        String ext = StringUtils.getFilenameExtension(photo.getFileName());
+        //같은 썸네일을 다른 작업이 동시에 쓸 수 있으므로 임시 파일에 쓰고 한 번에 옮긴다
+        Path temp = photoStorage.createStagingFile("thumb-");
+        try {
+            if(!photoMetrics.timeDisk(PhotoMetrics.ENCODE, () -> ImageIO.write(thumbImg, ext, temp.toFile()))) {
+                throw new IOException(String.format("%s 형식으로 썸네일을 저장할 수 없습니다.", ext));
+            }
+            photoStorage.put(photo.getThumbUrl(), temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //재시작 전에 큐에 남아있던 작업은 PENDING 상태로 DB에 남아있으므로 다시 큐에 넣는다
+    @EventListener(ApplicationReadyEvent.class)
+    public void rescanPending() {
+        Thread rescan = new Thread(() -> {
+            long afterId = 0L;
+            List<Long> photoIds;
+            do {
+                photoIds = photoRepository.findIdsByThumbStatus(ThumbnailStatus.PENDING, afterId, PageRequest.of(0, RESCAN_BATCH_SIZE));
+                for(Long photoId : photoIds) {
+                    thumbnailExecutor.execute(() -> generate(photoId));
+                    afterId = photoId;
+                }
+            } while (photoIds.size() == RESCAN_BATCH_SIZE);
+            log.info("Re-queued pending thumbnails up to photo {}", afterId);
+        }, "thumbnail-rescan");
+        rescan.setDaemon(true);
+        rescan.start();
+    }
+}
@@ -0,0 +1,309 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.UploadSession;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.UploadSessionDto;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//큰 원본을 multipart 한 번에 올리지 않고 청크로 나눠 올린다. 세션 생성 -> 청크 PUT (순서, 재전송 상관없음) -> 완료.
+//청크는 part 파일의 (번호 * chunkSize) 위치에 FileChannel 로 바로 쓰므로 요청 본문을 다른 곳에 버퍼링하지 않는다
+@Service
+public class UploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_CHUNKS = 8192; //received_chunks 1024 바이트
+    private static final int CLEANUP_BATCH_SIZE = 100;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private PhotoMetrics photoMetrics;
+
+    @Value("${photoalbum.upload.chunk-size:5242880}")
+    private int chunkSize;
+
+    @Value("${photoalbum.upload.session-ttl-hours:24}")
+    private long ttlHours;
+
+    private final Path upload_path = Paths.get(Constants.PATH_PREFIX + "/uploads");
+
+    //같은 세션의 청크 표시, 완료가 겹치지 않도록 uploadId 별로 잠근다
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    //part 파일 잠금. 청크 쓰기는 읽기 잠금이라 같은 세션의 청크도 동시에 쓰고,
+    //완료할 때는 쓰기 잠금으로 진행 중인 청크가 끝나기를 기다린 뒤 part 파일을 옮긴다
+    private final ReadWriteLock[] fileLocks = new ReadWriteLock[LOCK_STRIPES];
+
+    public UploadService() {
+        for(int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+            fileLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public UploadSessionDto createSession(Long albumId, String fileName, long totalSize, String sha256) throws IOException {
+        if(!albumRepository.existsById(albumId)) {
+            throw new EntityNotFoundException(String.format("앨범 아이디 %d으로 조회되지 않았습니다", albumId));
+        }
+        photoService.checkExtension(fileName);
+        if(totalSize <= 0 || totalSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("파일 크기는 1 바이트 이상 2GB 이하여야 합니다.");
+        }
+        if(sha256 == null || !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 은 64자리 16진수여야 합니다.");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setAlbumId(albumId);
+        session.setFileName(fileName);
+        session.setTotalSize(totalSize);
+        session.setChunkSize((int) Math.max(chunkSize, (totalSize + MAX_CHUNKS - 1) / MAX_CHUNKS));
+        session.setSha256(sha256.toLowerCase(Locale.ROOT));
+        session.setReceivedChunks(new byte[(session.getChunkCount() + 7) / 8]);
+        session.setExpiresAt(nextExpiry());
+
+        Files.createDirectories(upload_path);
+        Files.deleteIfExists(partPath(session.getUploadId()));
+        Files.createFile(partPath(session.getUploadId()));
+        return convertToDto(uploadSessionRepository.save(session));
+    }
+
+    public UploadSessionDto getSession(Long albumId, String uploadId) {
+        return convertToDto(findSession(albumId, uploadId));
+    }
+
+    //index 번째 청크를 part 파일의 제자리에 쓴다. 이미 받은 청크를 다시 보내면 덮어쓴다
+    public UploadSessionDto writeChunk(Long albumId, String uploadId, int index, InputStream body) throws IOException {
+        UploadSession session = findSession(albumId, uploadId);
+        if(index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException(String.format("청크 번호는 0 부터 %d 까지입니다.", session.getChunkCount() - 1));
+        }
+        long offset = (long) index * session.getChunkSize();
+        long length = session.getChunkLength(index);
+
+        long startedAt = System.nanoTime();
+        Lock fileLock = fileLockFor(uploadId).readLock();
+        fileLock.lock();
+        try (FileChannel channel = FileChannel.open(partPath(uploadId), StandardOpenOption.WRITE);
+             ReadableByteChannel in = Channels.newChannel(body)) {
+            long written = 0;
+            while (written < length) {
+                long n = channel.transferFrom(in, offset + written, length - written);
+                if(n <= 0) {
+                    break; //본문이 끝남
+                }
+                written += n;
+            }
+            if(written != length || in.read(ByteBuffer.allocate(1)) >= 0) {
+                throw new IllegalArgumentException(String.format("청크 %d 의 크기는 %d 바이트여야 합니다.", index, length));
+            }
+        } catch (NoSuchFileException e) {
+            //complete 가 part 파일을 옮긴 뒤에 도착한 청크
+            throw new IllegalStateException("완료 중이거나 이미 완료된 업로드입니다.");
+        } finally {
+            fileLock.unlock();
+        }
+        photoMetrics.recordDisk(PhotoMetrics.COPY, System.nanoTime() - startedAt);
+        photoMetrics.bytesIn("chunk", length);
+
+        synchronized (lockFor(uploadId)) {
+            //다른 청크가 그 사이에 표시했을 수 있으므로 다시 읽는다
+            session = findSession(albumId, uploadId);
+            byte[] received = session.getReceivedChunks();
+            received[index / 8] |= (byte) (1 << (index % 8));
+            session.setReceivedChunks(received);
+            session.setExpiresAt(nextExpiry());
+            return convertToDto(uploadSessionRepository.save(session));
+        }
+    }
+
+    //모든 청크를 받았으면 파일 전체의 SHA-256 을 확인하고 사진으로 저장한다.
+    //해시를 계산하기 전에 part 파일을 다른 이름으로 옮겨서, 늦게 도착한 청크가 확인한 내용을 바꾸지 못하게 한다.
+    //해시가 다르면 어느 청크가 잘못됐는지 알 수 없으므로 받은 청크 표시를 모두 지우고 처음부터 다시 받는다
+    public PhotoDto complete(Long albumId, String uploadId) throws IOException {
+        synchronized (lockFor(uploadId)) {
+            UploadSession session = findSession(albumId, uploadId);
+            List<Integer> missing = missingChunks(session);
+            if(!missing.isEmpty()) {
+                throw new IllegalStateException(String.format("받지 못한 청크가 %d 개 있습니다.", missing.size()));
+            }
+
+            Path part = partPath(uploadId);
+            Path completing = completingPath(uploadId);
+            Lock fileLock = fileLockFor(uploadId).writeLock();
+            fileLock.lock(); //진행 중인 청크 쓰기가 끝날 때까지 기다린다
+            try {
+                Files.move(part, completing, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                //이전 완료가 저장 중에 실패해서 파일이 없어졌으면 처음부터 다시 받는다
+                session.setReceivedChunks(new byte[session.getReceivedChunks().length]);
+                uploadSessionRepository.save(session);
+                Files.createFile(part);
+                throw new IllegalStateException("받은 파일이 없습니다. 다시 올려주세요.");
+            } finally {
+                fileLock.unlock();
+            }
+
+            try {
+                String hash = photoMetrics.timeDisk(PhotoMetrics.HASH, () -> sha256Of(completing));
+                if(!hash.equals(session.getSha256())) {
+                    session.setReceivedChunks(new byte[session.getReceivedChunks().length]);
+                    uploadSessionRepository.save(session);
+                    throw new IllegalArgumentException("받은 파일의 SHA-256 이 일치하지 않습니다. 다시 올려주세요.");
+                }
+
+                PhotoDto photoDto = photoService.saveStagedPhoto(albumId, session.getFileName(), completing, hash, session.getTotalSize());
+                uploadSessionRepository.delete(session);
+                return photoDto;
+            } finally {
+                //저장되지 않았으면 다시 청크를 받을 수 있도록 part 파일로 되돌린다
+                if(Files.exists(completing)) {
+                    Files.move(completing, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        }
+    }
+
+    public void abort(Long albumId, String uploadId) throws IOException {
+        synchronized (lockFor(uploadId)) {
+            UploadSession session = findSession(albumId, uploadId);
+            uploadSessionRepository.delete(session);
+            Files.deleteIfExists(partPath(uploadId));
+        }
+    }
+
+    //마지막 청크를 받은 뒤 ttl 이 지난 세션은 part 파일과 함께 지운다
+    @Scheduled(fixedDelayString = "${photoalbum.upload.cleanup-interval-ms:600000}")
+    public void expireSessions() {
+        List<UploadSession> expired;
+        do {
+            expired = uploadSessionRepository.findByExpiresAtBefore(new Date(), PageRequest.of(0, CLEANUP_BATCH_SIZE));
+            for(UploadSession session : expired) {
+                try {
+                    Files.deleteIfExists(partPath(session.getUploadId()));
+                    uploadSessionRepository.delete(session);
+                } catch (IOException e) {
+                    log.warn("Could not delete upload {}: {}", session.getUploadId(), e.getMessage());
+                    return;
+                }
+            }
+        } while (expired.size() == CLEANUP_BATCH_SIZE);
+    }
+
+    private UploadSession findSession(Long albumId, String uploadId) {
+        Optional<UploadSession> res = uploadSessionRepository.findById(uploadId);
+        if(res.isEmpty() || !res.get().getAlbumId().equals(albumId)) {
+            throw new EntityNotFoundException(String.format("업로드 ID %s를 찾을 수 없습니다", uploadId));
+        }
+        return res.get();
+    }
+
+    private static List<Integer> missingChunks(UploadSession session) {
+        List<Integer> missing = new ArrayList<>();
+        byte[] received = session.getReceivedChunks();
+        for(int i = 0; i < session.getChunkCount(); i++) {
+            if((received[i / 8] & (1 << (i % 8))) == 0) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private static String sha256Of(Path file) throws IOException {
+        MessageDigest digest = BlobStore.sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private UploadSessionDto convertToDto(UploadSession session) {
+        List<Integer> missing = missingChunks(session);
+        long receivedBytes = session.getTotalSize();
+        for(int index : missing) {
+            receivedBytes -= session.getChunkLength(index);
+        }
+
+        UploadSessionDto uploadSessionDto = new UploadSessionDto();
+        uploadSessionDto.setUploadId(session.getUploadId());
+        uploadSessionDto.setAlbumId(session.getAlbumId());
+        uploadSessionDto.setFileName(session.getFileName());
+        uploadSessionDto.setTotalSize(session.getTotalSize());
+        uploadSessionDto.setChunkSize(session.getChunkSize());
+        uploadSessionDto.setChunkCount(session.getChunkCount());
+        uploadSessionDto.setReceivedBytes(receivedBytes);
+        uploadSessionDto.setMissingChunks(missing);
+        uploadSessionDto.setExpiresAt(session.getExpiresAt());
+        return uploadSessionDto;
+    }
+
+    private Date nextExpiry() {
+        return new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours));
+    }
+
+    private Path partPath(String uploadId) {
+        return upload_path.resolve(uploadId + ".part");
+    }
+
+    private Path completingPath(String uploadId) {
+        return upload_path.resolve(uploadId + ".completing");
+    }
+
+    private Object lockFor(String uploadId) {
+        return locks[Math.floorMod(uploadId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private ReadWriteLock fileLockFor(String uploadId) {
+        return fileLocks[Math.floorMod(uploadId.hashCode(), LOCK_STRIPES)];
+    }
+}
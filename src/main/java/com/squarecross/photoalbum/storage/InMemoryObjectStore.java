@@ -0,0 +1,74 @@
+package com.squarecross.photoalbum.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+//메모리에만 두는 ObjectStore. 로컬 개발과 테스트에서 S3 대신 쓴다 (photoalbum.storage.type=memory)
+public class InMemoryObjectStore implements ObjectStore {
+
+    private final ConcurrentSkipListMap<String, StoredBytes> objects = new ConcurrentSkipListMap<>();
+
+    @Override
+    public Optional<StorageObject> head(String key) {
+        StoredBytes stored = objects.get(key);
+        return stored == null ? Optional.empty()
+                : Optional.of(new StorageObject("/" + key, stored.data.length, stored.lastModified, null));
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        StoredBytes stored = objects.get(key);
+        if(stored == null) {
+            throw new NoSuchFileException(key);
+        }
+        int from = (int) Math.min(offset, stored.data.length);
+        int to = length < 0 ? stored.data.length : (int) Math.min(stored.data.length, offset + length);
+        return new ByteArrayInputStream(Arrays.copyOfRange(stored.data, from, to));
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        objects.put(key, new StoredBytes(Files.readAllBytes(source), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void copy(String fromKey, String toKey) throws IOException {
+        StoredBytes stored = objects.get(fromKey);
+        if(stored == null) {
+            throw new NoSuchFileException(fromKey);
+        }
+        objects.put(toKey, new StoredBytes(stored.data, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void delete(String key) {
+        objects.remove(key);
+    }
+
+    @Override
+    public List<String> list(String prefix, int limit) {
+        return objects.tailMap(prefix, true).keySet().stream()
+                .takeWhile(key -> key.startsWith(prefix))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static final class StoredBytes {
+        private final byte[] data;
+        private final long lastModified;
+
+        private StoredBytes(byte[] data, long lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.squarecross.photoalbum.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//로컬 디스크 저장소. "/photos/original/3/a.png" 는 root/photos/original/3/{shard}/a.png 에 둔다.
+//shard 는 확장자를 뗀 파일명의 CRC32 하위 8비트(00~ff)라 디렉토리 하나에 파일이 몰리지 않고,
+//확장자만 다른 파일은 같은 shard 에 모인다. 나누기 전에 저장된 파일은 원래 위치에서 그대로 읽는다
+public class LocalPhotoStorage implements PhotoStorage {
+
+    private final Path root;
+    private final Path staging;
+
+    public LocalPhotoStorage(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.staging = Files.createDirectories(this.root.resolve("photos/tmp"));
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        Path path = existing(key);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new StorageObject(key, attributes.size(), attributes.lastModifiedTime().toMillis(), path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(shardedPath(key)) || Files.exists(legacyPath(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(existing(key));
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(existing(key), StandardOpenOption.READ);
+        channel.position(offset);
+        InputStream in = Channels.newInputStream(channel);
+        return new BoundedInputStream(in, length);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(legacyPath(key));
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        Path target = shardedPath(toKey);
+        Files.createDirectories(target.getParent());
+        Files.move(existing(fromKey), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean deleted = Files.deleteIfExists(shardedPath(key));
+        return Files.deleteIfExists(legacyPath(key)) || deleted;
+    }
+
+    @Override
+    public int deleteVariants(String dirKey, String stem) throws IOException {
+        Path dir = resolve(dirKey);
+        int deleted = deleteMatching(dir.resolve(shard(stem)), stem);
+        return deleted + deleteMatching(dir, stem);
+    }
+
+    @Override
+    public int deleteDirectory(String dirKey, int limit) throws IOException {
+        Path dir = resolve(dirKey);
+        if(!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).limit(limit).collect(Collectors.toList());
+        }
+        for(Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        if(files.size() < limit) {
+            //남은 shard 디렉토리를 깊은 것부터 지운다
+            List<Path> dirs;
+            try (Stream<Path> walk = Files.walk(dir)) {
+                dirs = walk.sorted((a, b) -> b.getNameCount() - a.getNameCount()).collect(Collectors.toList());
+            }
+            for(Path path : dirs) {
+                Files.deleteIfExists(path);
+            }
+        }
+        return files.size();
+    }
+
+    @Override
+    public Path createStagingFile(String prefix) throws IOException {
+        return Files.createTempFile(staging, prefix, ".part");
+    }
+
+    private int deleteMatching(Path dir, String stem) throws IOException {
+        if(!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<Path> matches = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                path -> Files.isRegularFile(path) && isVariant(path.getFileName().toString(), stem))) {
+            files.forEach(matches::add);
+        }
+        for(Path match : matches) {
+            Files.deleteIfExists(match);
+        }
+        return matches.size();
+    }
+
+    private Path existing(String key) throws IOException {
+        Path sharded = shardedPath(key);
+        if(Files.exists(sharded)) {
+            return sharded;
+        }
+        Path legacy = legacyPath(key);
+        if(Files.exists(legacy)) {
+            return legacy;
+        }
+        throw new NoSuchFileException(key);
+    }
+
+    Path shardedPath(String key) {
+        Path legacy = legacyPath(key);
+        String name = legacy.getFileName().toString();
+        return legacy.getParent().resolve(shard(stemOf(name))).resolve(name);
+    }
+
+    private Path legacyPath(String key) {
+        return resolve(key);
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key.startsWith("/") ? key.substring(1) : key).normalize();
+        if(!path.startsWith(root)) {
+            throw new IllegalArgumentException(String.format("잘못된 경로입니다: %s", key));
+        }
+        return path;
+    }
+
+    static String shard(String stem) {
+        CRC32 crc = new CRC32();
+        crc.update(stem.getBytes(StandardCharsets.UTF_8));
+        return String.format("%02x", crc.getValue() & 0xff);
+    }
+
+    static String stemOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    static boolean isVariant(String name, String stem) {
+        return name.equals(stem) || name.startsWith(stem + ".") && stemOf(name).equals(stem);
+    }
+}
@@ -0,0 +1,93 @@
+package com.squarecross.photoalbum.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+//ObjectStore(S3, MinIO, 메모리) 위의 PhotoStorage. 오브젝트 스토리지는 디렉토리가 없으므로 키를 그대로 쓴다
+public class ObjectStoragePhotoStorage implements PhotoStorage {
+
+    private final ObjectStore objectStore;
+    private final Path staging;
+
+    public ObjectStoragePhotoStorage(ObjectStore objectStore, Path staging) throws IOException {
+        this.objectStore = objectStore;
+        this.staging = Files.createDirectories(staging);
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        return objectStore.head(objectKey(key)).orElseThrow(() -> new NoSuchFileException(key));
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return objectStore.head(objectKey(key)).isPresent();
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return objectStore.get(objectKey(key), 0, -1);
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        return objectStore.get(objectKey(key), offset, length);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            objectStore.put(objectKey(key), source);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        objectStore.copy(objectKey(fromKey), objectKey(toKey));
+        objectStore.delete(objectKey(fromKey));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean existed = exists(key);
+        objectStore.delete(objectKey(key));
+        return existed;
+    }
+
+    @Override
+    public int deleteVariants(String dirKey, String stem) throws IOException {
+        String prefix = objectKey(dirKey.endsWith("/") ? dirKey : dirKey + "/");
+        int deleted = 0;
+        for(String key : objectStore.list(prefix + stem, Integer.MAX_VALUE)) {
+            if(LocalPhotoStorage.isVariant(key.substring(prefix.length()), stem)) {
+                objectStore.delete(key);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public int deleteDirectory(String dirKey, int limit) throws IOException {
+        List<String> keys = objectStore.list(objectKey(dirKey.endsWith("/") ? dirKey : dirKey + "/"), limit);
+        for(String key : keys) {
+            objectStore.delete(key);
+        }
+        return keys.size();
+    }
+
+    @Override
+    public Path createStagingFile(String prefix) throws IOException {
+        return Files.createTempFile(staging, prefix, ".part");
+    }
+
+    private static String objectKey(String key) {
+        return key.startsWith("/") ? key.substring(1) : key;
+    }
+}
@@ -0,0 +1,24 @@
+package com.squarecross.photoalbum.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+//S3 호환 오브젝트 스토리지의 최소 기능. 키는 "photos/original/3/a.png" 처럼 / 로 시작하지 않는다
+public interface ObjectStore {
+
+    Optional<StorageObject> head(String key) throws IOException;
+
+    //length 가 음수면 끝까지 읽는다
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    void put(String key, Path source) throws IOException;
+
+    void copy(String fromKey, String toKey) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    List<String> list(String prefix, int limit) throws IOException;
+}
@@ -0,0 +1,36 @@
+package com.squarecross.photoalbum.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+//사진 파일 저장소. 키는 Photo 의 originalUrl/thumbUrl 과 같은 "/photos/..." 형식의 논리 경로다.
+//서비스 코드는 디스크 경로를 직접 만들지 않고 이 인터페이스로만 파일을 읽고 쓴다
+public interface PhotoStorage {
+
+    //없으면 NoSuchFileException
+    StorageObject stat(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    //offset 부터 length 바이트만 읽는다 (Range 요청)
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    //로컬에 준비해 둔 파일을 key 위치로 옮긴다. 같은 키가 있으면 덮어쓴다
+    void put(String key, Path source) throws IOException;
+
+    void move(String fromKey, String toKey) throws IOException;
+
+    boolean delete(String key) throws IOException;
+
+    //dirKey 디렉토리에서 이름이 stem 이거나 "stem." 으로 시작하는 파일을 모두 지운다 (확장자만 다른 썸네일 등)
+    int deleteVariants(String dirKey, String stem) throws IOException;
+
+    //dirKey 아래 파일을 최대 limit 개 지운다. limit 보다 적게 지웠으면 디렉토리가 빈 것이다
+    int deleteDirectory(String dirKey, int limit) throws IOException;
+
+    //put 전에 내용을 써둘 로컬 임시 파일
+    Path createStagingFile(String prefix) throws IOException;
+}
@@ -0,0 +1,120 @@
+package com.squarecross.photoalbum.storage;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+//S3 호환 스토리지(AWS S3, MinIO). 버킷 하나에 사진 키를 그대로 쓴다
+public class S3ObjectStore implements ObjectStore {
+
+    private final S3Client s3;
+    private final String bucket;
+
+    public S3ObjectStore(S3Client s3, String bucket) {
+        this.s3 = s3;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public Optional<StorageObject> head(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            return Optional.of(new StorageObject("/" + key, head.contentLength(), head.lastModified().toEpochMilli(), null));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if(e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(key);
+        if(offset > 0 || length >= 0) {
+            request.range("bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        try {
+            return s3.getObject(request.build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            s3.putObject(builder -> builder.bucket(bucket).key(key), RequestBody.fromFile(source));
+        } catch (S3Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void copy(String fromKey, String toKey) throws IOException {
+        try {
+            s3.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket).sourceKey(fromKey)
+                    .destinationBucket(bucket).destinationKey(toKey)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(fromKey);
+        } catch (S3Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public List<String> list(String prefix, int limit) throws IOException {
+        List<String> keys = new ArrayList<>();
+        if(limit <= 0) {
+            return keys;
+        }
+        String token = null;
+        try {
+            do {
+                ListObjectsV2Response response = s3.listObjectsV2(ListObjectsV2Request.builder()
+                        .bucket(bucket).prefix(prefix).continuationToken(token)
+                        .maxKeys(Math.min(1000, limit - keys.size()))
+                        .build());
+                for(S3Object object : response.contents()) {
+                    keys.add(object.key());
+                }
+                token = response.isTruncated() ? response.nextContinuationToken() : null;
+            } while (token != null && keys.size() < limit);
+        } catch (S3Exception e) {
+            throw new IOException(e);
+        }
+        return keys;
+    }
+}
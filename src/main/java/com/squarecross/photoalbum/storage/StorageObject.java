@@ -0,0 +1,35 @@
+package com.squarecross.photoalbum.storage;
+
+import java.nio.file.Path;
+
+//저장된 파일의 크기와 수정 시각. 로컬 디스크에 있으면 sendfile 등에 쓸 수 있도록 실제 경로도 담는다
+public final class StorageObject {
+    private final String key;
+    private final long size;
+    private final long lastModified;
+    private final Path localPath;
+
+    public StorageObject(String key, long size, long lastModified, Path localPath) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.localPath = localPath;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    //로컬 파일이 아니면 null
+    public Path getLocalPath() {
+        return localPath;
+    }
+}
@@ -0,0 +1,180 @@
+package com.squarecross.photoalbum.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncResponseWriterTest {
+
+    @DisplayName("Pipe 가 capacity 만큼 차면 쓰는 쪽이 기다리고, 읽어서 자리가 나면 깨어난다.")
+    @Test
+    void Pipe_backpressure_테스트() throws Exception {
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(4);
+        pipe.write(new byte[]{1, 2, 3, 4});
+
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                pipe.write(5);
+                written.countDown();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        assertFalse(written.await(200, TimeUnit.MILLISECONDS)); //버퍼가 가득 차서 기다린다
+
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        assertEquals(4, pipe.read(buffer));
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        writer.join();
+
+        buffer.clear();
+        assertEquals(1, pipe.read(buffer));
+        assertEquals(5, buffer.get(0));
+    }
+
+    @DisplayName("Pipe 는 비어 있으면 0 을, 닫힌 뒤 남은 내용을 다 읽으면 -1 을 돌려준다.")
+    @Test
+    void Pipe_close_테스트() throws IOException {
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(16);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        assertEquals(0, pipe.read(buffer));
+
+        pipe.write(new byte[]{1, 2, 3});
+        pipe.close();
+        assertEquals(3, pipe.read(buffer));
+        assertEquals(-1, pipe.read(buffer));
+        assertThrows(IOException.class, () -> pipe.write(4)); //닫힌 뒤에는 쓸 수 없다
+    }
+
+    @DisplayName("쓰는 쪽이 실패하면, Pipe 를 읽을 때 그 예외를 던진다.")
+    @Test
+    void Pipe_fail_테스트() throws IOException {
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(16);
+        pipe.write(new byte[]{1, 2, 3});
+        IOException failure = new IOException("zip 실패");
+        pipe.fail(failure);
+
+        assertSame(failure, assertThrows(IOException.class, () -> pipe.read(ByteBuffer.allocate(16))));
+    }
+
+    @DisplayName("전송이 중단되면, 기다리던 쓰는 쪽이 깨어나서 IOException 을 받는다.")
+    @Test
+    void Pipe_cancel_테스트() throws Exception {
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(4);
+        pipe.write(new byte[]{1, 2, 3, 4});
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                pipe.write(5);
+            } catch (IOException e) {
+                thrown.set(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(100);
+        pipe.cancel();
+        writer.join(5000);
+
+        assertFalse(writer.isAlive());
+        assertInstanceOf(IOException.class, thrown.get());
+    }
+
+    @DisplayName("Pipe 에 쓴 내용을 모두 보내면, 요청을 정상 종료하고 onComplete 를 한 번 부른다.")
+    @Test
+    void 비동기_전송_완료_테스트() throws IOException {
+        MockHttpServletRequest request = asyncRequest();
+        ReadyOutputStream out = new ReadyOutputStream();
+        AtomicInteger completed = new AtomicInteger();
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(1024);
+
+        new AsyncResponseWriter().send(request, response(out), pipe, completed::incrementAndGet);
+        pipe.write("사진".getBytes(StandardCharsets.UTF_8));
+        pipe.close();
+
+        assertEquals("사진", out.body.toString(StandardCharsets.UTF_8));
+        assertEquals(1, completed.get());
+        assertFalse(request.isAsyncStarted()); //complete 됨
+        assertNull(request.getAttribute(AsyncResponseWriter.FAILURE_ATTRIBUTE));
+    }
+
+    @DisplayName("본문을 만들다 실패하면, 정상 종료하지 않고 다시 dispatch 해서 연결을 끊게 한다.")
+    @Test
+    void 비동기_전송_실패_테스트() throws IOException {
+        MockHttpServletRequest request = asyncRequest();
+        AtomicInteger completed = new AtomicInteger();
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(1024);
+
+        new AsyncResponseWriter().send(request, response(new ReadyOutputStream()), pipe, completed::incrementAndGet);
+        pipe.write(new byte[]{1, 2, 3});
+        pipe.fail(new IOException("zip 실패"));
+
+        assertEquals(1, completed.get());
+        assertNotNull(request.getAttribute(AsyncResponseWriter.FAILURE_ATTRIBUTE));
+        assertEquals(request.getRequestURI(), ((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+    }
+
+    static MockHttpServletRequest asyncRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/albums/1/photos/download");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    static HttpServletResponse response(ServletOutputStream out) {
+        return new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return out;
+            }
+        };
+    }
+
+    //항상 쓸 수 있는 출력. setWriteListener 하면 바로 onWritePossible 을 부른다
+    static class ReadyOutputStream extends ServletOutputStream {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+        }
+    }
+}
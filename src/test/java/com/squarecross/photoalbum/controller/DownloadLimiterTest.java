@@ -0,0 +1,72 @@
+package com.squarecross.photoalbum.controller;
+
+import com.squarecross.photoalbum.controller.AsyncResponseWriterTest.ReadyOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.squarecross.photoalbum.controller.AsyncResponseWriterTest.asyncRequest;
+import static com.squarecross.photoalbum.controller.AsyncResponseWriterTest.response;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadLimiterTest {
+
+    @DisplayName("동시 다운로드가 가득 차면, 다음 요청은 503 과 Retry-After 로 바로 응답한다.")
+    @Test
+    void 동시_다운로드_제한_테스트() throws IOException {
+        DownloadLimiter downloadLimiter = new DownloadLimiter(32);
+        List<Runnable> releases = new ArrayList<>();
+        for(int i = 0; i < 32; i++) {
+            Runnable release = downloadLimiter.tryAcquire(new MockHttpServletResponse());
+            assertNotNull(release);
+            releases.add(release);
+        }
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertNull(downloadLimiter.tryAcquire(rejected));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rejected.getStatus());
+        assertEquals("5", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+
+        //release 를 여러 번 불러도 자리는 하나만 돌아온다
+        releases.get(0).run();
+        releases.get(0).run();
+        assertEquals(1, downloadLimiter.availablePermits());
+        assertNotNull(downloadLimiter.tryAcquire(new MockHttpServletResponse()));
+        assertEquals(0, downloadLimiter.availablePermits());
+    }
+
+    @DisplayName("비동기 전송이 끝나면, 다운로드 자리를 돌려준다.")
+    @Test
+    void 전송_완료_후_자리_반환_테스트() throws IOException {
+        DownloadLimiter downloadLimiter = new DownloadLimiter(1);
+        Runnable release = downloadLimiter.tryAcquire(new MockHttpServletResponse());
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(1024);
+
+        new AsyncResponseWriter().send(asyncRequest(), response(new ReadyOutputStream()), pipe, release);
+        pipe.write(new byte[]{1, 2, 3});
+        assertEquals(0, downloadLimiter.availablePermits()); //보내는 중에는 자리를 잡고 있다
+
+        pipe.close();
+        assertEquals(1, downloadLimiter.availablePermits());
+    }
+
+    @DisplayName("본문을 만들다 실패해도, 다운로드 자리를 돌려준다.")
+    @Test
+    void 전송_실패_후_자리_반환_테스트() throws IOException {
+        DownloadLimiter downloadLimiter = new DownloadLimiter(1);
+        Runnable release = downloadLimiter.tryAcquire(new MockHttpServletResponse());
+        AsyncResponseWriter.Pipe pipe = new AsyncResponseWriter.Pipe(1024);
+
+        new AsyncResponseWriter().send(asyncRequest(), response(new ReadyOutputStream()), pipe, release);
+        pipe.fail(new IOException("zip 실패"));
+        release.run(); //요청 스레드의 finally 에서 한 번 더 불려도 자리는 하나다
+
+        assertEquals(1, downloadLimiter.availablePermits());
+    }
+}
@@ -0,0 +1,196 @@
+package com.squarecross.photoalbum.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.service.AlbumService;
+import com.squarecross.photoalbum.service.PhotoService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class PhotoControllerTest {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @DisplayName("stream=ndjson 으로 조회하면, 한 줄에 사진 하나씩 정렬 순서대로 내려준다.")
+    @Test
+    void 사진_목록_ndjson_스트리밍_테스트() throws Exception {
+        Long albumId = createAlbumWithPhotos("스트리밍ndjson");
+
+        String body = mockMvc.perform(get("/albums/{albumId}/photos", albumId)
+                        .param("stream", "ndjson").param("sort", "byName").param("orderBy", "asc"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("a.png", objectMapper.readTree(lines[0]).get("fileName").asText());
+        assertEquals("b.png", objectMapper.readTree(lines[1]).get("fileName").asText());
+    }
+
+    @DisplayName("stream=array 로 조회하면, 사진 목록을 하나의 JSON 배열로 내려준다.")
+    @Test
+    void 사진_목록_배열_스트리밍_테스트() throws Exception {
+        Long albumId = createAlbumWithPhotos("스트리밍array");
+
+        String body = mockMvc.perform(get("/albums/{albumId}/photos", albumId)
+                        .param("stream", "array").param("sort", "byName").param("orderBy", "desc"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/json"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        JsonNode photos = objectMapper.readTree(body);
+        assertTrue(photos.isArray());
+        assertEquals(2, photos.size());
+        assertEquals("b.png", photos.get(0).get("fileName").asText());
+        assertEquals("a.png", photos.get(1).get("fileName").asText());
+    }
+
+    @DisplayName("알 수 없는 스트리밍 형식은 응답을 쓰기 전에 거절한다.")
+    @Test
+    void 사진_목록_스트리밍_형식_예외_테스트() throws Exception {
+        Long albumId = createAlbumWithPhotos("스트리밍형식");
+
+        mockMvc.perform(get("/albums/{albumId}/photos", albumId).param("stream", "csv"))
+                .andExpect(status().isNotFound()); //이 컨트롤러는 IllegalArgumentException 을 404 로 응답한다
+    }
+
+    //MockMvc 의 응답은 비동기 출력(WriteListener)을 지원하지 않으므로 NIO 커넥터처럼 sendfile 을 켜고,
+    //Tomcat 이 보낼 구간(sendfile start, end)으로 본문을 확인한다
+    @DisplayName("Range 가 하나면, 206 과 요청한 구간의 Content-Range 로 그 구간만 보낸다.")
+    @Test
+    void 단일_구간_다운로드_테스트() throws Exception {
+        Long photoId = savePhoto("구간");
+        long length = download(photoId).getResponse().getContentLengthLong();
+
+        MvcResult result = mockMvc.perform(download(photoId, HttpHeaders.RANGE, "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andReturn();
+        assertSendfileRange(result, 10, 20);
+    }
+
+    @DisplayName("파일 길이를 넘는 Range 는 416 과 bytes */길이 로 응답한다.")
+    @Test
+    void 범위_밖_구간_다운로드_테스트() throws Exception {
+        Long photoId = savePhoto("범위밖");
+        long length = download(photoId).getResponse().getContentLengthLong();
+
+        mockMvc.perform(download(photoId, HttpHeaders.RANGE, "bytes=" + length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + length));
+    }
+
+    @DisplayName("If-None-Match 가 현재 ETag 와 같으면, 본문 없이 304 로 응답한다.")
+    @Test
+    void 조건부_요청_304_테스트() throws Exception {
+        Long photoId = savePhoto("조건부");
+        String etag = download(photoId).getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        MvcResult result = mockMvc.perform(download(photoId, HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertNull(result.getRequest().getAttribute(SENDFILE_FILENAME));
+    }
+
+    @DisplayName("If-Range 가 현재 ETag 와 다르면, Range 를 무시하고 200 으로 전체를 보낸다.")
+    @Test
+    void If_Range_불일치_전체_다운로드_테스트() throws Exception {
+        Long photoId = savePhoto("IfRange");
+        long length = download(photoId).getResponse().getContentLengthLong();
+
+        MvcResult result = mockMvc.perform(download(photoId, HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, "\"0-0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, length))
+                .andReturn();
+        assertSendfileRange(result, 0, length);
+    }
+
+    private Long savePhoto(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        Long albumId = albumService.createAlbum(albumDto).getAlbumId();
+        return photoService.savePhoto(image("range.png", 0x336699), albumId).getPhotoId();
+    }
+
+    private MvcResult download(Long photoId) throws Exception {
+        return mockMvc.perform(download(photoId, HttpHeaders.ACCEPT, "*/*"))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private MockHttpServletRequestBuilder download(Long photoId, String headerName, String headerValue) {
+        Long albumId = photoService.getPhoto(photoId).getAlbumId();
+        return get("/albums/{albumId}/photos/download", albumId)
+                .param("photoIds", String.valueOf(photoId))
+                .requestAttr(SENDFILE_SUPPORT, true)
+                .header(headerName, headerValue);
+    }
+
+    private static void assertSendfileRange(MvcResult result, long start, long end) {
+        assertNotNull(result.getRequest().getAttribute(SENDFILE_FILENAME));
+        assertEquals(start, result.getRequest().getAttribute(SENDFILE_START));
+        assertEquals(end, result.getRequest().getAttribute(SENDFILE_END));
+    }
+
+    private Long createAlbumWithPhotos(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        Long albumId = albumService.createAlbum(albumDto).getAlbumId();
+        photoService.savePhoto(image("b.png", 0x224466), albumId);
+        photoService.savePhoto(image("a.png", 0x664422), albumId);
+        return albumId;
+    }
+
+    private static MockMultipartFile image(String fileName, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("photos", fileName, "image/png", out.toByteArray());
+    }
+}
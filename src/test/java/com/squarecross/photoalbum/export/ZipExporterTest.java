@@ -0,0 +1,75 @@
+package com.squarecross.photoalbum.export;
+
+import com.squarecross.photoalbum.dto.PhotoFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//buffer-limit 보다 큰 파일이 메모리에 읽어두지 않는 경로로 가도록 작게 잡는다
+@SpringBootTest(properties = "photoalbum.zip.buffer-limit=1024")
+class ZipExporterTest {
+
+    @Autowired
+    private ZipExporter zipExporter;
+
+    @TempDir
+    Path dir;
+
+    @DisplayName("작은 이미지는 STORED, 큰 이미지는 레벨 0 DEFLATED, 그 외는 DEFLATED 로 넣고 내용은 그대로 풀린다.")
+    @Test
+    void 엔트리_압축_방식_테스트() throws IOException {
+        byte[] small = random(512);
+        byte[] large = random(64 * 1024);
+        byte[] text = "사진 설명\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        List<PhotoFile> files = List.of(
+                new PhotoFile("small.jpg", write("small.jpg", small)),
+                new PhotoFile("large.jpg", write("large.jpg", large)),
+                new PhotoFile("note.txt", write("note.txt", text)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        zipExporter.export(files, out);
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEntry(zipIn, "small.jpg", ZipEntry.STORED, small);
+            assertEntry(zipIn, "large.jpg", ZipEntry.DEFLATED, large);
+            assertEntry(zipIn, "note.txt", ZipEntry.DEFLATED, text);
+            assertNull(zipIn.getNextEntry());
+        }
+        //레벨 0 은 다시 압축하지 않으므로 큰 이미지는 블록 헤더만큼만 늘어난다
+        assertTrue(out.size() > small.length + large.length);
+        assertTrue(out.size() < small.length + large.length + text.length);
+    }
+
+    private static void assertEntry(ZipInputStream zipIn, String name, int method, byte[] expected) throws IOException {
+        ZipEntry entry = zipIn.getNextEntry();
+        assertNotNull(entry);
+        assertEquals(name, entry.getName());
+        assertEquals(method, entry.getMethod());
+        assertArrayEquals(expected, zipIn.readAllBytes()); //CRC 가 틀리면 여기서 ZipException 이 난다
+    }
+
+    private Path write(String fileName, byte[] data) throws IOException {
+        return Files.write(dir.resolve(fileName), data);
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
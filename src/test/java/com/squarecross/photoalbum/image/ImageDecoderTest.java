@@ -0,0 +1,60 @@
+package com.squarecross.photoalbum.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDecoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("큰 이미지는 목표 크기의 2배까지 subsampling 해서 디코딩한다.")
+    @Test
+    void 큰_이미지_subsampling_디코딩_테스트() throws IOException {
+        Path path = tempDir.resolve("large.png");
+        ImageIO.write(new BufferedImage(2400, 1200, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+
+        DecodedImage decoded = ImageDecoder.decode(path, 300);
+
+        assertEquals(2400, decoded.getSourceWidth());
+        assertEquals(1200, decoded.getSourceHeight());
+        assertEquals(4, decoded.getSubsampling());
+        assertEquals(600, decoded.getImage().getWidth());
+        assertEquals(300, decoded.getImage().getHeight());
+        assertTrue(decoded.getDecodedBytes() > 0);
+    }
+
+    @DisplayName("목표 크기보다 작은 이미지는 원본 그대로 디코딩한다.")
+    @Test
+    void 작은_이미지_디코딩_테스트() throws IOException {
+        Path path = tempDir.resolve("small.png");
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+
+        DecodedImage decoded = ImageDecoder.decode(path, 300);
+
+        assertEquals(1, decoded.getSubsampling());
+        assertEquals(200, decoded.getImage().getWidth());
+    }
+
+    @DisplayName("상자를 덮는(cover) rendition 은 짧은 변 기준으로 디코딩 크기를 정한다.")
+    @Test
+    void rendition_디코딩_크기_테스트() throws IOException {
+        Path path = tempDir.resolve("panorama.png");
+        ImageIO.write(new BufferedImage(4000, 1000, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+
+        assertEquals(100, ImageDecoder.targetSizeFor(4000, 1000, 100, 100, false));
+        assertEquals(4000, ImageDecoder.targetSizeFor(4000, 1000, 1000, 1000, true));
+        assertEquals(1.0, ImageDecoder.scaleFor(4000, 1000, 8000, 0, false));
+
+        DecodedImage decoded = ImageDecoder.decode(path, 100, 100, true);
+        assertTrue(decoded.getImage().getHeight() >= 100);
+    }
+}
@@ -0,0 +1,67 @@
+package com.squarecross.photoalbum.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailEngineTest {
+
+    @DisplayName("PROGRESSIVE 모드는 긴 변을 목표 크기로 줄이고 TYPE_INT_RGB 로 돌려준다.")
+    @Test
+    void 단계별_축소_테스트() {
+        ThumbnailEngine engine = new ThumbnailEngine(ThumbnailEngine.Mode.PROGRESSIVE);
+        BufferedImage source = new BufferedImage(4001, 3001, BufferedImage.TYPE_3BYTE_BGR);
+
+        BufferedImage thumb = engine.resize(source, 300);
+
+        assertEquals(300, thumb.getWidth());
+        assertEquals(225, thumb.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, thumb.getType());
+        assertEquals(1, engine.getCount(ThumbnailEngine.Mode.PROGRESSIVE));
+    }
+
+    @DisplayName("2x2 box 축소는 네 픽셀의 평균을 낸다.")
+    @Test
+    void box_축소_테스트() {
+        BufferedImage source = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        source.setRGB(0, 0, 0x000000);
+        source.setRGB(1, 0, 0xffffff);
+        source.setRGB(0, 1, 0x000000);
+        source.setRGB(1, 1, 0xffffff);
+
+        BufferedImage halved = ThumbnailEngine.halve(source);
+
+        assertEquals(1, halved.getWidth());
+        assertEquals(0x80, halved.getRGB(0, 0) & 0xff);
+    }
+
+    @DisplayName("투명한 픽셀이 섞인 2x2 box 축소는 불투명한 픽셀의 색을 유지하고 알파만 평균한다.")
+    @Test
+    void 투명_픽셀_box_축소_테스트() {
+        BufferedImage source = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        source.setRGB(0, 0, 0xffff0000); //불투명한 빨강
+        source.setRGB(1, 0, 0x00000000); //투명한 검정
+        source.setRGB(0, 1, 0xffff0000);
+        source.setRGB(1, 1, 0x000000ff); //투명한 파랑
+
+        int pixel = ThumbnailEngine.halve(source).getRGB(0, 0);
+
+        assertEquals(0x80, pixel >>> 24);
+        assertEquals(0xff0000, pixel & 0xffffff); //알파로 가중하지 않으면 어두운 빨강에 파랑이 섞인다
+    }
+
+    @DisplayName("모두 투명한 2x2 box 축소는 투명한 검정이 된다.")
+    @Test
+    void 완전_투명_box_축소_테스트() {
+        BufferedImage source = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        source.setRGB(0, 0, 0x00ffffff);
+        source.setRGB(1, 0, 0x00ffffff);
+        source.setRGB(0, 1, 0x00ffffff);
+        source.setRGB(1, 1, 0x00ffffff);
+
+        assertEquals(0, ThumbnailEngine.halve(source).getRGB(0, 0));
+    }
+}
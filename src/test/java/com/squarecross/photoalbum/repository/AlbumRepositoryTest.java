@@ -0,0 +1,75 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class AlbumRepositoryTest {
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @DisplayName("ALBUM_SUMMARY 로 조회한 앨범은 엔티티와 모든 필드가 같고, 표지에는 썸네일이 준비되지 않은 사진의 원본 URL 이 들어간다.")
+    @Test
+    void ALBUM_SUMMARY_엔티티_매핑_일치_테스트() {
+        Album album = new Album();
+        album.setAlbumName("앨범projection");
+        album.setPhotoCount(0);
+        album.setTotalBytes(0L);
+        album.setCoverThumbUrls("");
+        Long albumId = albumRepository.save(album).getAlbumId();
+        Photo ready = savePhoto(album, "ready.png", ThumbnailStatus.READY);
+        Photo pending = savePhoto(album, "pending.png", ThumbnailStatus.PENDING);
+        albumRepository.refreshPhotoStats(albumId);
+        entityManager.flush();
+        entityManager.clear();
+
+        Album expected = albumRepository.findById(albumId).orElseThrow();
+        assertSameSummary(expected, albumRepository.findSummaryById(albumId).orElseThrow());
+        List<AlbumSummary> summaries = albumRepository.findSummariesByIds(List.of(albumId));
+        assertEquals(1, summaries.size());
+        assertSameSummary(expected, summaries.get(0));
+
+        assertEquals(2, expected.getPhotoCount().intValue());
+        assertEquals(ready.getFileSize() + pending.getFileSize(), expected.getTotalBytes().longValue());
+        assertEquals(pending.getOriginalUrl() + "\n" + ready.getThumbUrl(), expected.getCoverThumbUrls()); //최신 사진이 먼저
+    }
+
+    private static void assertSameSummary(Album expected, AlbumSummary actual) {
+        assertEquals(expected.getAlbumId(), actual.getAlbumId());
+        assertEquals(expected.getAlbumName(), actual.getAlbumName());
+        assertEquals(expected.getCreatedAt().getTime(), actual.getCreatedAt().getTime());
+        assertEquals(expected.getPhotoCount(), actual.getPhotoCount());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getCoverThumbUrls(), actual.getCoverThumbUrls());
+    }
+
+    private Photo savePhoto(Album album, String fileName, ThumbnailStatus thumbStatus) {
+        Photo photo = new Photo();
+        photo.setAlbum(album);
+        photo.setFileName(fileName);
+        photo.setFileSize(fileName.length() * 100);
+        photo.setOriginalUrl("/photos/original/" + album.getAlbumId() + "/" + fileName);
+        photo.setThumbUrl("/photos/thumb/" + album.getAlbumId() + "/" + fileName);
+        photo.setThumbStatus(thumbStatus);
+        return photoRepository.save(photo);
+    }
+}
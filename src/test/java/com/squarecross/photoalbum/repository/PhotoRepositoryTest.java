@@ -0,0 +1,109 @@
+package com.squarecross.photoalbum.repository;
+
+import com.squarecross.photoalbum.domain.Album;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.mapper.PhotoMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class PhotoRepositoryTest {
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @DisplayName("PHOTO_DTO 로 조회한 사진은 엔티티를 PhotoMapper 로 바꾼 것과 모든 필드가 같다.")
+    @Test
+    void PHOTO_DTO_엔티티_매핑_일치_테스트() {
+        Album album = saveAlbum("사진projection");
+        List<Long> photoIds = Arrays.asList(
+                savePhoto(album, "ready.png", ThumbnailStatus.READY),
+                savePhoto(album, "pending.png", ThumbnailStatus.PENDING),
+                savePhoto(album, "failed.png", ThumbnailStatus.FAILED),
+                savePhoto(album, "legacy.png", null));
+        entityManager.flush();
+        entityManager.clear();
+
+        for(Long photoId : photoIds) {
+            PhotoDto expected = PhotoMapper.convertToDto(photoRepository.findById(photoId).orElseThrow());
+            assertSameDto(expected, photoRepository.findDtoById(photoId).orElseThrow());
+        }
+        List<PhotoDto> listed = photoRepository.findDtosByAlbumId(album.getAlbumId(), Sort.by("photoId"));
+        assertEquals(photoIds.size(), listed.size());
+        for(int i = 0; i < photoIds.size(); i++) {
+            assertSameDto(PhotoMapper.convertToDto(photoRepository.findById(photoIds.get(i)).orElseThrow()), listed.get(i));
+        }
+    }
+
+    @DisplayName("썸네일이 준비되지 않은 사진은 PHOTO_DTO 의 thumbUrl 이 원본 URL 로 대체된다.")
+    @Test
+    void PHOTO_DTO_썸네일_대체_테스트() {
+        Album album = saveAlbum("썸네일대체");
+        Long pendingId = savePhoto(album, "pending.png", ThumbnailStatus.PENDING);
+        Long failedId = savePhoto(album, "failed.png", ThumbnailStatus.FAILED);
+        Long readyId = savePhoto(album, "ready.png", ThumbnailStatus.READY);
+        Long legacyId = savePhoto(album, "legacy.png", null);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(originalUrl(album, "pending.png"), photoRepository.findDtoById(pendingId).orElseThrow().getThumbUrl());
+        assertEquals(originalUrl(album, "failed.png"), photoRepository.findDtoById(failedId).orElseThrow().getThumbUrl());
+        assertEquals(thumbUrl(album, "ready.png"), photoRepository.findDtoById(readyId).orElseThrow().getThumbUrl());
+        assertEquals(thumbUrl(album, "legacy.png"), photoRepository.findDtoById(legacyId).orElseThrow().getThumbUrl());
+    }
+
+    private static void assertSameDto(PhotoDto expected, PhotoDto actual) {
+        assertEquals(expected.getPhotoId(), actual.getPhotoId());
+        assertEquals(expected.getFileName(), actual.getFileName());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getOriginalUrl(), actual.getOriginalUrl());
+        assertEquals(expected.getThumbUrl(), actual.getThumbUrl());
+        assertEquals(expected.getUploadedAt().getTime(), actual.getUploadedAt().getTime());
+        assertEquals(expected.getAlbumId(), actual.getAlbumId());
+        assertEquals(expected.getThumbStatus(), actual.getThumbStatus());
+    }
+
+    private Album saveAlbum(String albumName) {
+        Album album = new Album();
+        album.setAlbumName(albumName);
+        return albumRepository.save(album);
+    }
+
+    private Long savePhoto(Album album, String fileName, ThumbnailStatus thumbStatus) {
+        Photo photo = new Photo();
+        photo.setAlbum(album);
+        photo.setFileName(fileName);
+        photo.setFileSize(fileName.length() * 100);
+        photo.setOriginalUrl(originalUrl(album, fileName));
+        photo.setThumbUrl(thumbUrl(album, fileName));
+        photo.setThumbStatus(thumbStatus);
+        return photoRepository.save(photo).getPhotoId();
+    }
+
+    private static String originalUrl(Album album, String fileName) {
+        return "/photos/original/" + album.getAlbumId() + "/" + fileName;
+    }
+
+    private static String thumbUrl(Album album, String fileName) {
+        return "/photos/thumb/" + album.getAlbumId() + "/" + fileName;
+    }
+}
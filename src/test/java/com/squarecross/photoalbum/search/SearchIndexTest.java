@@ -0,0 +1,66 @@
+package com.squarecross.photoalbum.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    @DisplayName("이름에 검색어가 들어간 항목을 일치도가 높은 순서로 돌려준다.")
+    @Test
+    void 검색_순위_테스트() {
+        SearchIndex index = new SearchIndex();
+        index.put(SearchIndex.Type.ALBUM, 1L, null, "제주 여행");
+        index.put(SearchIndex.Type.ALBUM, 2L, null, "여행");
+        index.put(SearchIndex.Type.ALBUM, 3L, null, "가족여행 2023");
+        index.put(SearchIndex.Type.PHOTO, 10L, 1L, "여행_01.jpg");
+        index.put(SearchIndex.Type.ALBUM, 4L, null, "졸업식");
+
+        List<SearchIndex.Hit> hits = index.search("여행", null, 0, 10);
+
+        assertEquals(4, hits.size());
+        assertEquals(2L, hits.get(0).getEntry().getId()); //완전히 같은 이름
+        assertEquals(10L, hits.get(1).getEntry().getId()); //이름이 검색어로 시작
+        assertEquals(1L, hits.get(2).getEntry().getId()); //단어가 검색어로 시작
+        assertEquals(3L, hits.get(3).getEntry().getId()); //중간에 포함
+        assertEquals(1, index.search("여행", SearchIndex.Type.PHOTO, 0, 10).size());
+        assertEquals(2, index.search("여행", null, 2, 10).size());
+        assertTrue(index.search("행여", null, 0, 10).isEmpty());
+    }
+
+    @DisplayName("이름이 바뀌거나 앨범이 지워지면 색인에서도 바뀐다.")
+    @Test
+    void 색인_변경_테스트() {
+        SearchIndex index = new SearchIndex();
+        index.put(SearchIndex.Type.ALBUM, 1L, null, "Summer");
+        index.put(SearchIndex.Type.PHOTO, 10L, 1L, "beach.png");
+
+        SearchIndex.Entry previous = index.put(SearchIndex.Type.ALBUM, 1L, null, "Winter");
+        assertTrue(index.findAlbumIds("sum").isEmpty());
+        assertEquals(1, index.findAlbumIds("WIN").size());
+
+        index.restore(SearchIndex.Type.ALBUM, 1L, previous); //롤백
+        assertEquals(1, index.findAlbumIds("summer").size());
+
+        index.removeAlbum(1L);
+        assertEquals(0, index.size(SearchIndex.Type.ALBUM));
+        assertEquals(0, index.size(SearchIndex.Type.PHOTO));
+    }
+
+    @DisplayName("이름이나 이름 안의 단어가 입력한 글자로 시작하면 자동완성 목록에 나온다.")
+    @Test
+    void 자동완성_테스트() {
+        SearchIndex index = new SearchIndex();
+        index.put(SearchIndex.Type.ALBUM, 1L, null, "제주 여행");
+        index.put(SearchIndex.Type.ALBUM, 2L, null, "제주도");
+        index.put(SearchIndex.Type.PHOTO, 10L, 1L, "IMG_여름.jpg");
+
+        assertEquals(List.of("제주 여행", "제주도"), index.suggest("제주", null, 10));
+        assertEquals(List.of("제주 여행"), index.suggest("여", SearchIndex.Type.ALBUM, 10));
+        assertEquals(List.of("IMG_여름.jpg"), index.suggest("여름", null, 10));
+        assertEquals(1, index.suggest("제", null, 1).size());
+    }
+}
@@ -4,6 +4,7 @@ import com.squarecross.photoalbum.Constants;
 import com.squarecross.photoalbum.domain.Album;
 import com.squarecross.photoalbum.domain.Photo;
 import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.CursorPageDto;
 import com.squarecross.photoalbum.mapper.AlbumMapper;
 import com.squarecross.photoalbum.repository.AlbumRepository;
 import com.squarecross.photoalbum.repository.PhotoRepository;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
 
 import java.io.IOException;
@@ -34,9 +36,16 @@ class AlbumServiceTest {
 
     @Autowired
     AlbumService albumService;
+
+    @Autowired
+    AlbumReclaimer albumReclaimer;
+
     @Autowired
     private PhotoRepository photoRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @DisplayName("AlbumId로 앨범을 단건 조회하면, 앨범을 반환한다.")
     @Test
     void 앨범_단건_조회_테스트() {
@@ -95,6 +104,96 @@ class AlbumServiceTest {
 
     }
 
+    @DisplayName("생성된 앨범은 사진 수와 크기를 앨범에 저장해두고, 사진 테이블을 다시 세지 않는다.")
+    @Test
+    void 앨범_사진수_저장_테스트() throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName("집계");
+        AlbumDto created = albumService.createAlbum(albumDto);
+
+        albumRepository.addPhotoStats(created.getAlbumId(), 2, 300L);
+        albumRepository.addPhotoStats(created.getAlbumId(), -1, -100L);
+        entityManager.clear(); //bulk update 는 영속성 컨텍스트의 앨범을 바꾸지 않는다
+
+        AlbumDto resAlbum = albumService.getAlbum(created.getAlbumId());
+        assertEquals(1, resAlbum.getCount());
+        assertEquals(200L, resAlbum.getTotalBytes());
+        assertTrue(resAlbum.getThumbUrls().isEmpty());
+    }
+
+    @DisplayName("앨범명을 바꿔도, 그 사이에 bulk update 로 바뀐 사진 수와 크기를 덮어쓰지 않는다.")
+    @Test
+    void 앨범명_변경_사진수_유지_테스트() throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName("변경전");
+        AlbumDto created = albumService.createAlbum(albumDto); //영속성 컨텍스트에 사진 수 0 인 앨범이 남아있다
+
+        albumRepository.addPhotoStats(created.getAlbumId(), 3, 900L);
+        AlbumDto updateDto = new AlbumDto();
+        updateDto.setAlbumName("변경후");
+        albumService.changeName(created.getAlbumId(), updateDto);
+        albumRepository.flush();
+        entityManager.clear();
+
+        AlbumDto resAlbum = albumService.getAlbum(created.getAlbumId());
+        assertEquals("변경후", resAlbum.getAlbumName());
+        assertEquals(3, resAlbum.getCount());
+        assertEquals(900L, resAlbum.getTotalBytes());
+    }
+
+    @DisplayName("앨범 목록 조회 시, 앨범별 사진 Count와 최신 썸네일 4장을 함께 반환한다.")
+    @Test
+    void 앨범_목록_요약_조회_테스트() {
+        Album album1 = new Album();
+        Album album2 = new Album();
+        album1.setAlbumName("요약테스트1");
+        album2.setAlbumName("요약테스트2");
+        Album savedAlbum1 = albumRepository.save(album1);
+        Album savedAlbum2 = albumRepository.save(album2);
+
+        //첫번째 앨범에만 사진 5장 저장
+        for(int i = 1; i <= 5; i++) {
+            Photo photo = new Photo();
+            photo.setFileName("사진" + i);
+            photo.setThumbUrl("/photos/thumb/" + savedAlbum1.getAlbumId() + "/사진" + i);
+            photo.setAlbum(savedAlbum1);
+            photoRepository.save(photo);
+        }
+
+        List<AlbumDto> albumDtos = albumService.getAlbumList("요약테스트", "byName", "asc");
+
+        assertEquals(2, albumDtos.size());
+        assertEquals(5, albumDtos.get(0).getCount());
+        assertEquals(4, albumDtos.get(0).getThumbUrls().size()); //썸네일은 최대 4장
+        assertEquals(0, albumDtos.get(1).getCount());
+        assertTrue(albumDtos.get(1).getThumbUrls().isEmpty());
+    }
+
+    @DisplayName("커서로 앨범 목록을 페이지 단위로 조회하면, 이어지는 페이지를 중복 없이 반환한다.")
+    @Test
+    void 앨범_목록_커서_페이지_테스트() {
+        for(String name : List.of("페이지c", "페이지a", "페이지b")) {
+            Album album = new Album();
+            album.setAlbumName(name);
+            albumRepository.save(album);
+        }
+
+        CursorPageDto<AlbumDto> first = albumService.getAlbumPage("페이지", "byName", "asc", null, 2);
+        assertEquals(2, first.getItems().size());
+        assertEquals("페이지a", first.getItems().get(0).getAlbumName());
+        assertEquals("페이지b", first.getItems().get(1).getAlbumName());
+        assertNotNull(first.getNextCursor());
+
+        CursorPageDto<AlbumDto> second = albumService.getAlbumPage("페이지", "byName", "asc", first.getNextCursor(), 2);
+        assertEquals(1, second.getItems().size());
+        assertEquals("페이지c", second.getItems().get(0).getAlbumName());
+        assertNull(second.getNextCursor()); //마지막 페이지
+
+        //정렬 기준이 다른 커서는 사용할 수 없다
+        assertThrows(IllegalArgumentException.class,
+                () -> albumService.getAlbumPage("페이지", "byDate", "asc", first.getNextCursor(), 2));
+    }
+
     @DisplayName("앨범명을 입력하면, 앨범이 생성된다.")
     @Test
     void 앨범_생성_테스트() throws IOException {
@@ -174,6 +273,7 @@ class AlbumServiceTest {
         //앨범 생성 및 삭제
         albumService.createAlbum(albumDto);
         albumService.deleteAlbum(albumId);
+        albumReclaimer.reclaim(); //파일은 백그라운드에서 지워지므로 직접 실행
         Path path = Paths.get(Constants.PATH_PREFIX + "/photos/original/" + albumId);
         Path thumbPath = Paths.get(Constants.PATH_PREFIX + "/photos/thumb/" + albumId);
 
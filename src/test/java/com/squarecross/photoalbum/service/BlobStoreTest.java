@@ -0,0 +1,189 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.domain.StoredBlob;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.repository.StoredBlobRepository;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManager;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//참조가 없어진 파일을 바로 지우는지 보려고 유예 시간을 없앤다
+@SpringBootTest(properties = "photoalbum.blob.purge-grace-ms=0")
+@Transactional
+class BlobStoreTest {
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @DisplayName("같은 내용을 두 번 올리면 파일은 하나만 두고, 사진을 모두 지워야 파일이 지워진다.")
+    @Test
+    void 중복_내용_참조_수_테스트() throws IOException {
+        Long albumId = createAlbum("중복제거");
+        MockMultipartFile file = image("같은내용.png", 1);
+
+        PhotoDto first = photoService.savePhoto(file, albumId);
+        PhotoDto second = photoService.savePhoto(file, albumId);
+        String hash = contentHashOf(first.getPhotoId());
+
+        assertEquals(hash, contentHashOf(second.getPhotoId()));
+        assertEquals(2, refCountOf(hash));
+        assertTrue(photoStorage.exists(BlobStore.originalUrl(hash)));
+
+        //하나를 지워도 다른 사진이 가리키므로 남아있다
+        photoService.deletePhotos(first.getPhotoId(), albumId);
+        blobStore.purgeUnreferenced();
+        assertEquals(1, refCountOf(hash));
+        assertTrue(photoStorage.exists(BlobStore.originalUrl(hash)));
+
+        photoService.deletePhotos(second.getPhotoId(), albumId);
+        blobStore.purgeUnreferenced();
+        entityManager.clear();
+        assertTrue(storedBlobRepository.findById(hash).isEmpty());
+        assertFalse(photoStorage.exists(BlobStore.originalUrl(hash)));
+    }
+
+    //deleteAlbum 을 직접 롤백해 보기 위해 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("앨범을 지우면 사진이 가리키던 참조를 같은 트랜잭션에서 줄이고, 롤백되면 참조 수도 그대로다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 앨범_삭제_참조_반환_테스트() throws IOException {
+        Long albumId = createAlbum("삭제할앨범");
+        Long otherAlbumId = createAlbum("남는앨범");
+        try {
+            MockMultipartFile shared = image("공유.png", 2);
+            PhotoDto sharedPhoto = photoService.savePhoto(shared, albumId);
+            photoService.savePhoto(image("공유 사본.png", 2), albumId);
+            photoService.savePhoto(shared, otherAlbumId);
+            PhotoDto ownPhoto = photoService.savePhoto(image("혼자.png", 3), albumId);
+            String sharedHash = contentHashOf(sharedPhoto.getPhotoId());
+            String ownHash = contentHashOf(ownPhoto.getPhotoId());
+            assertEquals(3, refCountOf(sharedHash));
+
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    albumService.deleteAlbum(albumId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                status.setRollbackOnly();
+            });
+            assertEquals(3, refCountOf(sharedHash));
+            assertEquals(1, refCountOf(ownHash));
+            assertTrue(photoRepository.findById(ownPhoto.getPhotoId()).isPresent());
+
+            albumService.deleteAlbum(albumId);
+            assertEquals(1, refCountOf(sharedHash)); //다른 앨범의 사진이 가리키는 참조만 남는다
+            assertEquals(0, refCountOf(ownHash));
+            assertTrue(photoRepository.findById(ownPhoto.getPhotoId()).isEmpty());
+        } finally {
+            if(albumRepository.existsById(albumId)) {
+                albumService.deleteAlbum(albumId);
+            }
+            albumService.deleteAlbum(otherAlbumId);
+        }
+    }
+
+    //저장을 직접 롤백해 보기 위해 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("사진 행을 넣는 트랜잭션이 롤백되면, 원본 참조 수도 늘어나지 않고 파일은 purge 로 지워진다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 사진_저장_롤백_참조_수_테스트() throws IOException {
+        Long albumId = createAlbum("저장롤백");
+        try {
+            MockMultipartFile file = image("롤백.png", 4);
+            String hash = HexFormat.of().formatHex(BlobStore.sha256().digest(file.getBytes()));
+
+            transactionTemplate.executeWithoutResult(status -> {
+                photoService.savePhoto(file, albumId);
+                status.setRollbackOnly();
+            });
+            assertEquals(0, refCountOf(hash));
+            assertTrue(storedBlobRepository.findById(hash).isPresent()); //행이 남아 있어야 purge 가 파일을 찾는다
+
+            blobStore.purgeUnreferenced();
+            assertFalse(photoStorage.exists(BlobStore.originalUrl(hash)));
+
+            PhotoDto saved = photoService.savePhoto(file, albumId);
+            assertEquals(hash, contentHashOf(saved.getPhotoId()));
+            assertEquals(1, refCountOf(hash));
+            assertTrue(photoStorage.exists(BlobStore.originalUrl(hash)));
+        } finally {
+            albumService.deleteAlbum(albumId);
+        }
+    }
+
+    private String contentHashOf(Long photoId) {
+        return photoRepository.findById(photoId).map(Photo::getContentHash).orElseThrow();
+    }
+
+    //참조 수는 bulk update 로 바뀌므로 영속성 컨텍스트를 비우고 다시 읽는다. 그 사이 purge 로 지워졌으면 0
+    private long refCountOf(String hash) {
+        entityManager.clear();
+        return storedBlobRepository.findById(hash).map(StoredBlob::getRefCount).orElse(0L);
+    }
+
+    private Long createAlbum(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        return albumService.createAlbum(albumDto).getAlbumId();
+    }
+
+    //seed 마다 내용이 다른 PNG. 다른 테스트가 남긴 파일과 해시가 겹치지 않도록 모든 픽셀을 채운다
+    private static MockMultipartFile image(String fileName, long seed) throws IOException {
+        Random random = new Random(seed * 7919 + 18);
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        for(int x = 0; x < 8; x++) {
+            for(int y = 0; y < 8; y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("photos", fileName, "image/png", out.toByteArray());
+    }
+}
@@ -0,0 +1,93 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.ExportJob;
+import com.squarecross.photoalbum.domain.ExportStatus;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.repository.ExportJobRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ExportServiceTest {
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ExportJobRepository exportJobRepository;
+
+    @DisplayName("만료된 압축 파일이라도 내려받는 중이면 지우지 않고, 전송이 끝난 뒤의 정리 때 지운다.")
+    @Test
+    void 다운로드_중_만료_보류_테스트() throws IOException {
+        Long albumId = createAlbum("내보내기만료");
+        ExportJob exportJob = new ExportJob();
+        exportJob.setAlbumId(albumId);
+        exportJob.setStatus(ExportStatus.COMPLETED);
+        exportJob.setFingerprint("expired");
+        exportJob.setExpiresAt(new Date(System.currentTimeMillis() - 60_000L));
+        Long exportId = exportJobRepository.save(exportJob).getExportId();
+        Path artifact = Paths.get(Constants.PATH_PREFIX + "/exports", exportId + ".zip");
+        Files.createDirectories(artifact.getParent());
+        Files.write(artifact, new byte[]{1, 2, 3});
+        try {
+            exportService.openArtifact(albumId, exportId);
+            exportService.expireArtifacts();
+            assertTrue(Files.exists(artifact));
+            assertEquals(ExportStatus.COMPLETED, exportJobRepository.findById(exportId).orElseThrow().getStatus());
+
+            exportService.closeArtifact(exportId);
+            exportService.expireArtifacts();
+            assertFalse(Files.exists(artifact));
+            assertEquals(ExportStatus.EXPIRED, exportJobRepository.findById(exportId).orElseThrow().getStatus());
+        } finally {
+            Files.deleteIfExists(artifact);
+        }
+    }
+
+    @DisplayName("작업을 만든 뒤 앨범이 바뀌었으면, 지금 구성으로 압축하고 fingerprint 를 다시 매긴다.")
+    @Test
+    void 구성_변경_후_fingerprint_갱신_테스트() throws IOException {
+        Long albumId = createAlbum("내보내기변경");
+        ExportJob exportJob = new ExportJob();
+        exportJob.setAlbumId(albumId);
+        exportJob.setStatus(ExportStatus.PENDING);
+        exportJob.setFingerprint("stale");
+        exportJob.setTotalCount(3);
+        Long exportId = exportJobRepository.save(exportJob).getExportId();
+        Path artifact = Paths.get(Constants.PATH_PREFIX + "/exports", exportId + ".zip");
+        try {
+            exportService.run(exportId);
+
+            ExportJob completed = exportJobRepository.findById(exportId).orElseThrow();
+            assertEquals(ExportStatus.COMPLETED, completed.getStatus());
+            assertNotEquals("stale", completed.getFingerprint());
+            assertEquals(0, completed.getTotalCount());
+            //같은 구성으로 다시 요청하면 다시 매긴 작업을 재사용한다
+            assertEquals(exportId, exportService.createExport(albumId).getExportId());
+        } finally {
+            Files.deleteIfExists(artifact);
+        }
+    }
+
+    private Long createAlbum(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        return albumService.createAlbum(albumDto).getAlbumId();
+    }
+}
@@ -0,0 +1,32 @@
+package com.squarecross.photoalbum.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileNamesTest {
+
+    @DisplayName("겹치는 파일명이 없으면, 원래 파일명을 그대로 사용한다.")
+    @Test
+    void 파일명_중복_없음_테스트() {
+        assertEquals("IMG_0001.jpg", FileNames.nextFileName("IMG_0001.jpg", Set.of("IMG_0002.jpg")));
+    }
+
+    @DisplayName("파일명이 겹치면, 비어있는 가장 작은 번호를 붙인다.")
+    @Test
+    void 파일명_중복_번호_테스트() {
+        List<String> taken = List.of("IMG_0001.jpg", "IMG_0001 (2).jpg", "IMG_0001 (4).jpg");
+        assertEquals("IMG_0001 (3).jpg", FileNames.nextFileName("IMG_0001.jpg", taken));
+    }
+
+    @DisplayName("LIKE 패턴은 파일명의 와일드카드 문자를 escape 한다.")
+    @Test
+    void 파일명_LIKE_패턴_테스트() {
+        assertEquals("IMG!_0001 (%).jpg", FileNames.variantPattern("IMG_0001.jpg"));
+        assertEquals("100!% (%).png", FileNames.variantPattern("100%.png"));
+    }
+}
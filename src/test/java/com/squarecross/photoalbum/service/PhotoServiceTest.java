@@ -0,0 +1,214 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.Constants;
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.PhotoUploadResultDto;
+import com.squarecross.photoalbum.repository.AlbumRepository;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.storage.PhotoStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class PhotoServiceTest {
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private PhotoStorage photoStorage;
+
+    @DisplayName("같은 앨범에 같은 파일명으로 두 번 올리면, 두번째 사진은 번호가 붙은 이름으로 저장된다.")
+    @Test
+    void 같은_파일명_업로드_테스트() throws IOException {
+        Long albumId = createAlbum("파일명중복");
+
+        PhotoDto first = photoService.savePhoto(image("IMG_0001.png", 0x336699), albumId);
+        PhotoDto second = photoService.savePhoto(image("IMG_0001.png", 0x996633), albumId);
+
+        assertEquals("IMG_0001.png", first.getFileName());
+        assertEquals("IMG_0001 (2).png", second.getFileName());
+        assertEquals(2, albumService.getAlbum(albumId).getCount());
+    }
+
+    //캐시는 커밋된 뒤에 비워지므로 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("사진 목록을 조회한 뒤 사진을 올리면, 다시 조회한 목록에 새 사진이 보인다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 업로드_후_캐시_목록_갱신_테스트() throws IOException {
+        Long albumId = createAlbum("캐시갱신");
+        try {
+            assertTrue(photoService.getPhotoList(albumId, "byDate", "desc").isEmpty());
+            assertEquals(0, albumService.getAlbum(albumId).getCount());
+
+            PhotoDto saved = photoService.savePhoto(image("캐시.png", 0x123456), albumId);
+
+            List<PhotoDto> photos = photoService.getPhotoList(albumId, "byDate", "desc");
+            assertEquals(1, photos.size());
+            assertEquals(saved.getPhotoId(), photos.get(0).getPhotoId());
+            assertEquals(1, albumService.getAlbum(albumId).getCount());
+        } finally {
+            albumService.deleteAlbum(albumId);
+        }
+    }
+
+    //캐시는 커밋된 뒤에 비워지므로 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("사진과 사진 목록을 조회한 뒤 사진을 지우면, 다시 조회할 때 지운 사진이 보이지 않는다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 삭제_후_캐시_갱신_테스트() throws IOException {
+        Long albumId = createAlbum("삭제캐시");
+        try {
+            PhotoDto saved = photoService.savePhoto(image("삭제.png", 0x654321), albumId);
+            assertEquals(saved.getPhotoId(), photoService.getPhoto(saved.getPhotoId()).getPhotoId());
+            assertEquals(1, photoService.getPhotoList(albumId, "byDate", "desc").size());
+
+            photoService.deletePhotos(saved.getPhotoId(), albumId);
+
+            assertTrue(photoService.getPhotoList(albumId, "byDate", "desc").isEmpty());
+            assertThrows(RuntimeException.class, () -> photoService.getPhoto(saved.getPhotoId()));
+        } finally {
+            albumService.deleteAlbum(albumId);
+        }
+    }
+
+    //업로드 스레드가 커밋된 앨범을 읽어야 하므로 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("여러 장을 올리다 한 장이 실패해도, 나머지는 저장되고 파일마다 요청 순서대로 결과를 받는다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 여러장_업로드_일부_실패_테스트() throws IOException {
+        Long albumId = createAlbum("일부실패");
+        try {
+            MockMultipartFile broken = new MockMultipartFile("photos", "깨짐.png", "image/png", new byte[0]) {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    throw new IOException("읽을 수 없음");
+                }
+            };
+            MultipartFile[] files = {image("첫번째.png", 0x102030), broken, image("세번째.png", 0x302010)};
+
+            List<PhotoUploadResultDto> results = photoService.savePhotos(files, albumId);
+
+            assertEquals(3, results.size());
+            assertEquals("첫번째.png", results.get(0).getPhoto().getFileName());
+            assertFalse(results.get(1).isStored());
+            assertEquals("깨짐.png", results.get(1).getFileName());
+            assertNotNull(results.get(1).getError());
+            assertEquals("세번째.png", results.get(2).getPhoto().getFileName());
+            assertEquals(2, photoService.getPhotoList(albumId, "byDate", "desc").size());
+        } finally {
+            albumService.deleteAlbum(albumId);
+        }
+    }
+
+    @DisplayName("한 배치보다 사진이 많은 앨범을 스트리밍하면, 배치 경계에서 빠지거나 겹치지 않고 정렬 순서대로 모두 넘겨준다.")
+    @Test
+    void 사진_목록_배치_스트리밍_테스트() throws IOException {
+        Long albumId = createAlbum("배치스트리밍");
+        int count = Constants.MAX_PAGE_SIZE + 1;
+        for(int i = 0; i < count; i++) {
+            photoService.savePhoto(image(String.format("%03d.png", i), i), albumId);
+        }
+
+        List<PhotoDto> streamed = new ArrayList<>();
+        photoService.streamPhotoList(albumId, "byName", "asc", streamed::add);
+
+        assertEquals(count, streamed.size());
+        for(int i = 0; i < count; i++) {
+            assertEquals(String.format("%03d.png", i), streamed.get(i).getFileName());
+        }
+    }
+
+    //이동은 커밋 전에 실패하므로 테스트 트랜잭션 없이 실행해서 롤백된 행을 다시 읽는다
+    @DisplayName("앨범 디렉토리에 저장된 사진을 옮기다 원본 하나가 없으면, 옮긴 파일과 사진 행을 모두 되돌린다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 사진_이동_실패_복구_테스트() throws IOException {
+        Long fromAlbumId = createAlbum("이동실패전");
+        Long toAlbumId = createAlbum("이동실패후");
+        try {
+            Photo moved = legacyPhoto(fromAlbumId, "있음.png", true);
+            Photo missing = legacyPhoto(fromAlbumId, "없음.png", false);
+
+            assertThrows(RuntimeException.class, () -> photoService.movePhotos(fromAlbumId, toAlbumId,
+                    new Long[]{moved.getPhotoId(), missing.getPhotoId()}));
+
+            assertTrue(photoStorage.exists(moved.getOriginalUrl()));
+            assertTrue(photoStorage.exists(moved.getThumbUrl()));
+            assertFalse(photoStorage.exists("/photos/original/" + toAlbumId + "/있음.png"));
+            assertFalse(photoStorage.exists("/photos/thumb/" + toAlbumId + "/있음.png"));
+            for(Photo photo : List.of(moved, missing)) {
+                Photo reloaded = photoRepository.findById(photo.getPhotoId()).orElseThrow();
+                assertEquals(fromAlbumId, reloaded.getAlbum().getAlbumId());
+                assertEquals(photo.getOriginalUrl(), reloaded.getOriginalUrl());
+            }
+        } finally {
+            albumService.deleteAlbum(fromAlbumId);
+            albumService.deleteAlbum(toAlbumId);
+        }
+    }
+
+    private Long createAlbum(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        return albumService.createAlbum(albumDto).getAlbumId();
+    }
+
+    //내용 주소 저장 이전 방식으로 앨범 디렉토리에 저장된 사진. withFiles 가 false 면 파일 없이 행만 만든다
+    private Photo legacyPhoto(Long albumId, String fileName, boolean withFiles) throws IOException {
+        Photo photo = new Photo();
+        photo.setAlbum(albumRepository.findById(albumId).orElseThrow());
+        photo.setFileName(fileName);
+        photo.setOriginalUrl("/photos/original/" + albumId + "/" + fileName);
+        photo.setThumbUrl("/photos/thumb/" + albumId + "/" + fileName);
+        if(withFiles) {
+            byte[] data = image(fileName, 0x445566).getBytes();
+            photo.setFileSize(data.length);
+            for(String key : List.of(photo.getOriginalUrl(), photo.getThumbUrl())) {
+                Path source = photoStorage.createStagingFile("legacy");
+                Files.write(source, data);
+                photoStorage.put(key, source);
+            }
+        }
+        return photoRepository.save(photo);
+    }
+
+    //rgb 가 다르면 내용(해시)도 다르다
+    static MockMultipartFile image(String fileName, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("photos", fileName, "image/png", out.toByteArray());
+    }
+}
@@ -0,0 +1,75 @@
+package com.squarecross.photoalbum.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenditionCacheTest {
+
+    @TempDir
+    Path root;
+
+    @DisplayName("전체 크기가 한도를 넘으면, 가장 오래 안 쓴 파일부터 지운다.")
+    @Test
+    void LRU_삭제_테스트() throws IOException {
+        RenditionCache cache = new RenditionCache(root, 10, 0);
+        cache.load();
+        Path a = put(cache, "1/a.jpg");
+        Path b = put(cache, "1/b.jpg");
+        assertTrue(cache.touch(a)); //a 를 최근에 쓴 것으로 만든다
+
+        Path c = put(cache, "2/c.jpg"); //12 bytes > 10 bytes
+
+        assertTrue(Files.exists(a));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(c));
+        assertFalse(cache.touch(b));
+    }
+
+    @DisplayName("시작할 때 디스크에 있던 파일도 한도를 넘으면 지운다.")
+    @Test
+    void 시작_시_한도_초과_테스트() throws IOException {
+        Path old = root.resolve("1/old.jpg");
+        Files.createDirectories(old.getParent());
+        Files.write(old, new byte[8]);
+        Files.writeString(root.resolve("1/half.jpg.tmp"), "쓰다 만 파일");
+
+        RenditionCache cache = new RenditionCache(root, 10, 60_000);
+        cache.load();
+        Path added = put(cache, "1/new.jpg");
+
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(root.resolve("1/half.jpg.tmp")));
+        assertTrue(Files.exists(added));
+    }
+
+    @DisplayName("방금 돌려준 파일은 한도를 넘어도 유예 시간 동안 지우지 않는다.")
+    @Test
+    void 최근_사용_파일_보호_테스트() throws IOException {
+        RenditionCache cache = new RenditionCache(root, 10, 60_000);
+        cache.load();
+        Path a = put(cache, "1/a.jpg");
+        Path b = put(cache, "1/b.jpg");
+        Path c = put(cache, "1/c.jpg");
+
+        assertTrue(Files.exists(a));
+        assertTrue(Files.exists(b));
+        assertTrue(Files.exists(c));
+        assertTrue(cache.touch(a));
+    }
+
+    //4 bytes 짜리 rendition 을 캐시에 넣는다
+    private Path put(RenditionCache cache, String key) throws IOException {
+        Path path = cache.resolve(key);
+        Path temp = cache.newTempFile(path);
+        Files.write(temp, new byte[4]);
+        cache.put(temp, path);
+        return path;
+    }
+}
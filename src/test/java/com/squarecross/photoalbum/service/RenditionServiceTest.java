@@ -0,0 +1,120 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.ThumbnailStatus;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.PhotoFile;
+import com.squarecross.photoalbum.metrics.PhotoMetrics;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RenditionServiceTest {
+
+    private static final int REQUESTS = 8;
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //다른 스레드에서 사진을 읽어야 하므로 테스트 트랜잭션 없이 실행하고 앨범을 직접 지운다
+    @DisplayName("같은 rendition 을 동시에 요청하면, 원본은 한 번만 디코딩하고 모두 같은 파일을 받는다.")
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void 동시_요청_한_번만_생성_테스트() throws Exception {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName("동시렌더링");
+        Long albumId = albumService.createAlbum(albumDto).getAlbumId();
+        ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            PhotoDto photo = photoService.savePhoto(image(), albumId);
+            awaitThumbnail(photo.getPhotoId());
+            long decodedBefore = decodeCount();
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<PhotoFile>> results = new ArrayList<>();
+            for(int i = 0; i < REQUESTS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return renditionService.render(photo.getPhotoId(), 120, 90, "cover", "jpg");
+                }));
+            }
+            start.countDown();
+
+            Path first = results.get(0).get().getPath();
+            for(Future<PhotoFile> result : results) {
+                assertEquals(first, result.get().getPath());
+            }
+            assertTrue(Files.exists(first));
+            assertEquals(1, decodeCount() - decodedBefore);
+        } finally {
+            executor.shutdownNow();
+            albumService.deleteAlbum(albumId);
+        }
+    }
+
+    //썸네일 작업도 디코딩 시간을 기록하므로 끝날 때까지 기다린다
+    private void awaitThumbnail(Long photoId) throws InterruptedException {
+        for(int i = 0; i < 100; i++) {
+            if(photoRepository.findById(photoId).orElseThrow().getThumbStatus() != ThumbnailStatus.PENDING) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("썸네일 생성이 끝나지 않았습니다.");
+    }
+
+    private long decodeCount() {
+        Timer timer = meterRegistry.find("photoalbum.disk").tag("phase", PhotoMetrics.DECODE).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    //이전 실행에서 만든 rendition 이 쓰이지 않도록 매번 내용이 다른, 디코딩에 시간이 좀 걸리는 크기의 PNG
+    private static MockMultipartFile image() throws IOException {
+        Random random = new Random();
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        for(int x = 0; x < image.getWidth(); x++) {
+            for(int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("photos", "원본.png", "image/png", out.toByteArray());
+    }
+}
@@ -0,0 +1,184 @@
+package com.squarecross.photoalbum.service;
+
+import com.squarecross.photoalbum.domain.Photo;
+import com.squarecross.photoalbum.dto.AlbumDto;
+import com.squarecross.photoalbum.dto.PhotoDto;
+import com.squarecross.photoalbum.dto.UploadSessionDto;
+import com.squarecross.photoalbum.repository.PhotoRepository;
+import com.squarecross.photoalbum.repository.StoredBlobRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManager;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//청크를 여러 개로 나누기 위해 청크 크기를 작게 잡는다
+@SpringBootTest(properties = "photoalbum.upload.chunk-size=256")
+@AutoConfigureMockMvc
+@Transactional
+class UploadServiceTest {
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DisplayName("청크를 순서와 상관없이 올리면, 아직 받지 못한 청크 번호만 남는다. 같은 청크를 다시 보내도 된다.")
+    @Test
+    void 청크_순서_무관_업로드_테스트() throws IOException {
+        Long albumId = createAlbum("청크순서");
+        byte[] data = image(1);
+        UploadSessionDto session = uploadService.createSession(albumId, "청크.png", data.length, sha256(data));
+        int chunkCount = session.getChunkCount();
+        assertTrue(chunkCount >= 3);
+
+        uploadService.writeChunk(albumId, session.getUploadId(), chunkCount - 1, chunk(data, session, chunkCount - 1));
+        uploadService.writeChunk(albumId, session.getUploadId(), 0, chunk(data, session, 0));
+        UploadSessionDto resent = uploadService.writeChunk(albumId, session.getUploadId(), 0, chunk(data, session, 0));
+
+        UploadSessionDto partial = uploadService.getSession(albumId, session.getUploadId());
+        assertEquals(chunkCount - 2, partial.getMissingChunks().size());
+        assertFalse(partial.getMissingChunks().contains(0));
+        assertFalse(partial.getMissingChunks().contains(chunkCount - 1));
+        assertEquals(resent.getReceivedBytes(), partial.getReceivedBytes()); //다시 보낸 청크는 한 번만 센다
+
+        //받지 못한 청크가 있으면 완료할 수 없다
+        assertThrows(IllegalStateException.class, () -> uploadService.complete(albumId, session.getUploadId()));
+
+        for(int index : partial.getMissingChunks()) {
+            uploadService.writeChunk(albumId, session.getUploadId(), index, chunk(data, session, index));
+        }
+        PhotoDto photoDto = uploadService.complete(albumId, session.getUploadId());
+
+        assertEquals("청크.png", photoDto.getFileName());
+        assertEquals(data.length, photoDto.getFileSize());
+    }
+
+    @DisplayName("청크 크기가 맞지 않으면, 400 으로 응답한다.")
+    @Test
+    void 청크_크기_오류_테스트() throws Exception {
+        Long albumId = createAlbum("청크크기");
+        byte[] data = image(2);
+        UploadSessionDto session = uploadService.createSession(albumId, "크기.png", data.length, sha256(data));
+
+        mockMvc.perform(put("/albums/{albumId}/uploads/{uploadId}/chunks/{index}", albumId, session.getUploadId(), 0)
+                        .content(Arrays.copyOf(data, session.getChunkSize() - 1)))
+                .andExpect(status().isBadRequest());
+
+        assertTrue(uploadService.getSession(albumId, session.getUploadId()).getMissingChunks().contains(0));
+    }
+
+    @DisplayName("받은 파일의 SHA-256 이 다르면, 받은 청크 표시를 모두 지우고 다시 받는다.")
+    @Test
+    void SHA256_불일치_테스트() throws IOException {
+        Long albumId = createAlbum("해시불일치");
+        byte[] data = image(3);
+        UploadSessionDto session = uploadService.createSession(albumId, "해시.png", data.length, sha256(image(4)));
+        uploadAll(albumId, session, data);
+
+        assertThrows(IllegalArgumentException.class, () -> uploadService.complete(albumId, session.getUploadId()));
+
+        UploadSessionDto reset = uploadService.getSession(albumId, session.getUploadId());
+        assertEquals(session.getChunkCount(), reset.getMissingChunks().size());
+        assertEquals(0, reset.getReceivedBytes());
+
+        //part 파일이 남아있으므로 같은 세션으로 다시 올릴 수 있다
+        uploadAll(albumId, session, data);
+        assertThrows(IllegalArgumentException.class, () -> uploadService.complete(albumId, session.getUploadId()));
+    }
+
+    @DisplayName("이미 저장된 내용을 이어받기로 올리면, 파일은 하나만 두고 참조 수를 늘린다.")
+    @Test
+    void 이어받기_완료_중복_제거_테스트() throws IOException {
+        Long albumId = createAlbum("이어받기완료");
+        byte[] data = image(5);
+        photoService.savePhoto(new MockMultipartFile("photos", "원본.png", "image/png", data), albumId);
+
+        UploadSessionDto session = uploadService.createSession(albumId, "원본.png", data.length, sha256(data));
+        uploadAll(albumId, session, data);
+        PhotoDto photoDto = uploadService.complete(albumId, session.getUploadId());
+
+        assertEquals("원본 (2).png", photoDto.getFileName());
+        assertThrows(javax.persistence.EntityNotFoundException.class,
+                () -> uploadService.getSession(albumId, session.getUploadId())); //완료된 세션은 지워진다
+
+        entityManager.clear(); //참조 수는 bulk update 로 바뀐다
+        Photo photo = photoRepository.findById(photoDto.getPhotoId()).orElseThrow();
+        assertEquals(sha256(data), photo.getContentHash());
+        assertEquals(2, storedBlobRepository.findById(photo.getContentHash()).orElseThrow().getRefCount());
+    }
+
+    private void uploadAll(Long albumId, UploadSessionDto session, byte[] data) throws IOException {
+        for(int index = 0; index < session.getChunkCount(); index++) {
+            uploadService.writeChunk(albumId, session.getUploadId(), index, chunk(data, session, index));
+        }
+    }
+
+    private static ByteArrayInputStream chunk(byte[] data, UploadSessionDto session, int index) {
+        int from = index * session.getChunkSize();
+        return new ByteArrayInputStream(Arrays.copyOfRange(data, from, Math.min(from + session.getChunkSize(), data.length)));
+    }
+
+    private Long createAlbum(String albumName) throws IOException {
+        AlbumDto albumDto = new AlbumDto();
+        albumDto.setAlbumName(albumName);
+        return albumService.createAlbum(albumDto).getAlbumId();
+    }
+
+    //seed 마다 내용이 다른, 청크 여러 개 크기의 PNG
+    private static byte[] image(long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for(int x = 0; x < 16; x++) {
+            for(int y = 0; y < 16; y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.squarecross.photoalbum.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoStorageTest {
+
+    @TempDir
+    Path root;
+
+    @DisplayName("로컬 저장소는 파일을 shard 디렉토리에 두고, 나누기 전 위치의 파일도 읽는다.")
+    @Test
+    void 로컬_shard_저장_테스트() throws IOException {
+        LocalPhotoStorage storage = new LocalPhotoStorage(root);
+        storage.put("/photos/original/1/a.png", staged(storage, "sharded"));
+
+        Path sharded = root.resolve("photos/original/1/" + LocalPhotoStorage.shard("a") + "/a.png");
+        assertTrue(Files.exists(sharded));
+        assertEquals(sharded, storage.stat("/photos/original/1/a.png").getLocalPath());
+
+        //예전 방식으로 앨범 디렉토리에 바로 저장된 파일
+        Files.writeString(root.resolve("photos/original/1/b.png"), "legacy");
+        assertTrue(storage.exists("/photos/original/1/b.png"));
+        assertEquals("legacy", read(storage.open("/photos/original/1/b.png")));
+
+        assertEquals(2, storage.deleteDirectory("/photos/original/1", 10));
+        assertTrue(Files.notExists(root.resolve("photos/original/1")));
+    }
+
+    @DisplayName("저장소 밖을 가리키는 키는 사용할 수 없다.")
+    @Test
+    void 로컬_경로_탈출_테스트() throws IOException {
+        LocalPhotoStorage storage = new LocalPhotoStorage(root);
+
+        assertThrows(IllegalArgumentException.class, () -> storage.open("/photos/../../etc/passwd"));
+    }
+
+    @DisplayName("오브젝트 저장소는 구간 읽기와 확장자만 다른 파일 삭제를 지원한다.")
+    @Test
+    void 오브젝트_저장소_테스트() throws IOException {
+        ObjectStoragePhotoStorage storage = new ObjectStoragePhotoStorage(new InMemoryObjectStore(), root.resolve("staging"));
+        storage.put("/photos/blobs/ab/abcd", staged(storage, "0123456789"));
+        storage.put("/photos/blob-thumbs/ab/abcd.png", staged(storage, "png"));
+        storage.put("/photos/blob-thumbs/ab/abcd.jpg", staged(storage, "jpg"));
+        storage.put("/photos/blob-thumbs/ab/abcdef.png", staged(storage, "other"));
+
+        assertEquals(10, storage.stat("/photos/blobs/ab/abcd").getSize());
+        assertNull(storage.stat("/photos/blobs/ab/abcd").getLocalPath());
+        assertEquals("2345", read(storage.open("/photos/blobs/ab/abcd", 2, 4)));
+
+        assertEquals(2, storage.deleteVariants("/photos/blob-thumbs/ab", "abcd"));
+        assertTrue(storage.exists("/photos/blob-thumbs/ab/abcdef.png"));
+
+        storage.move("/photos/blob-thumbs/ab/abcdef.png", "/photos/thumb/1/abcdef.png");
+        assertFalse(storage.exists("/photos/blob-thumbs/ab/abcdef.png"));
+        assertEquals(1, storage.deleteDirectory("/photos/thumb/1", 10));
+    }
+
+    private static Path staged(PhotoStorage storage, String content) throws IOException {
+        Path temp = storage.createStagingFile("test-");
+        Files.writeString(temp, content);
+        return temp;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}